@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class AttachBenchmark
+ * 
+ * Measures moving a subtree from one parent to another : the cost must not depend
+ * on the size of the subtree.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AttachBenchmark {
+
+    @Param({"10", "100000"})
+    int subtreeSize;
+
+    private Element first;
+    private Element second;
+    private Element subtree;
+
+    @Setup
+    public void setUp() {
+        first = new Element("first");
+        second = new Element("second");
+        subtree = Trees.catalog(subtreeSize / 2);
+        first.addChild(subtree);
+    }
+
+    @Benchmark
+    public Element moveBackAndForth() {
+        second.addChild(subtree);
+        first.addChild(subtree);
+        return subtree;
+    }
+}
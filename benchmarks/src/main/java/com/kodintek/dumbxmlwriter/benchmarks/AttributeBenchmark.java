@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class AttributeBenchmark
+ * 
+ * Measures the cost of adding attributes to elements, and of serializing attribute-heavy elements.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AttributeBenchmark {
+
+    @Param({"1", "3", "16"})
+    int attributes;
+
+    private String[] names;
+    private Element element;
+    private StringBuilder sb;
+
+    @Setup
+    public void setUp() {
+        names = new String[attributes];
+        for(int i = 0 ; i<attributes ; i++) {
+            names[i] = "attribute"+i;
+        }
+        element = build();
+        sb = new StringBuilder(1024);
+    }
+
+    @Benchmark
+    public Element build() {
+        Element e = new Element("element");
+        for(String name : names) {
+            e.addAttribute(name, "value");
+        }
+        return e;
+    }
+
+    @Benchmark
+    public StringBuilder serialize() {
+        sb.setLength(0);
+        element.writeTo(sb, OutputFormat.COMPACT);
+        return sb;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.BatchWriter;
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class BatchBenchmark
+ * 
+ * Measures the number of small event documents written per second into a Writer :
+ * through a loop of toString() calls, and through a BatchWriter with each framing.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchBenchmark {
+
+    private static final int EVENTS = 1000;
+
+    private final List<Element> events = new ArrayList<>();
+
+    private final Writer sink = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        for(int i = 0 ; i<EVENTS ; i++) {
+            Element event = new Element("event");
+            event.addAttribute("id", Integer.toString(i));
+            event.addAttribute("level", "INFO");
+            new Element("message", event).addTextChild("User "+i+" logged in");
+            events.add(event);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public Writer toStringLoop() throws IOException {
+        for(Element event : events) {
+            sink.write(event.toString(true));
+            sink.write("\n");
+        }
+        return sink;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public Writer newline() throws IOException {
+        return batch(BatchWriter.Framing.NEWLINE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public Writer envelope() throws IOException {
+        return batch(BatchWriter.Framing.ENVELOPE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public Writer lengthPrefixed() throws IOException {
+        return batch(BatchWriter.Framing.LENGTH_PREFIXED);
+    }
+
+    private Writer batch(BatchWriter.Framing framing) throws IOException {
+        BatchWriter batch = new BatchWriter(sink, OutputFormat.COMPACT, framing);
+        batch.writeAll(events);
+        batch.close();
+        return sink;
+    }
+}
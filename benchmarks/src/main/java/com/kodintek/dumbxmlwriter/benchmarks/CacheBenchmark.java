@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class CacheBenchmark
+ * 
+ * Measures the template-reuse case : a static header block written over and over with
+ * a small changing body, with and without the header rendering being cached.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CacheBenchmark {
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    private Element envelope;
+    private Element body;
+    private StringBuilder sb;
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        envelope = new Element("envelope");
+        Element header = new Element("header", envelope);
+        for(int i = 0 ; i<50 ; i++) {
+            Element field = new Element("field", header);
+            field.addAttribute("name", "field"+i);
+            field.addTextChild("static value "+i);
+        }
+        if(cached) {
+            header.enableCache();
+        }
+        body = new Element("body", envelope);
+        sb = new StringBuilder(8192);
+    }
+
+    @Benchmark
+    public StringBuilder render() {
+        Element message = new Element("message", body);
+        message.addTextChild(Integer.toString(counter++));
+        sb.setLength(0);
+        envelope.writeTo(sb, OutputFormat.COMPACT);
+        //Move the message out of the body, ready for the next one
+        new Element("holder").addChild(message);
+        return sb;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.ChannelOutput;
+import com.kodintek.dumbxmlwriter.Element;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class ChannelOutputBenchmark
+ * 
+ * Compares writing a document to a file through a String (toString, getBytes, FileOutputStream)
+ * with encoding it straight into a reused direct buffer flushed to a FileChannel.
+ * 
+ * The 'peakHeapMB' counter gives the heap used at the peak, which for the String route holds the copies of the
+ * document at once. With the gc profiler (-prof gc), gc.alloc.rate.norm gives the bytes allocated per document :
+ * this is allocation, not heap held.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChannelOutputBenchmark {
+
+    @Param({"10000", "100000"})
+    int items;
+
+    private Element root;
+    private File file;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Trees.catalog(items);
+        file = File.createTempFile("dumbxml-bench", ".xml");
+        buffer = ByteBuffer.allocateDirect(ChannelOutput.DEFAULT_CAPACITY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void stringRoute(PeakHeap peak) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(root.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        peak.measure();
+    }
+
+    @Benchmark
+    public void channelRoute(PeakHeap peak) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.truncate(0);
+        try (ChannelOutput out = new ChannelOutput(channel, buffer)) {
+            root.writeTo(out);
+        }
+        peak.measure();
+    }
+}
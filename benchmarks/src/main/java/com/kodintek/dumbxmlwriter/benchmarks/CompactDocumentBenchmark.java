@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.CompactDocument;
+import com.kodintek.dumbxmlwriter.Element;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class CompactDocumentBenchmark
+ * 
+ * Compares the heap retained by the same catalog, as an Element tree and as a CompactDocument :
+ * items having an attribute and a child with a text value. The retained bytes per node are reported
+ * in the 'retainedPerElement' counter.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+public class CompactDocumentBenchmark {
+
+    @Param({"1000000", "10000000"})
+    int nodes;
+
+    @Benchmark
+    public Object elements(Retained retained) {
+        int items = (nodes - 1) / 2;
+        Element root = new Element("catalog");
+        for(int i = 0 ; i<items ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("id", Integer.toString(i));
+            new Element("name", item).addTextChild("Product "+i);
+        }
+        retained.measure(root, nodes);
+        return root;
+    }
+
+    @Benchmark
+    public Object compact(Retained retained) {
+        int items = (nodes - 1) / 2;
+        CompactDocument doc = new CompactDocument("catalog", nodes);
+        for(int i = 0 ; i<items ; i++) {
+            int item = doc.addElement(CompactDocument.ROOT, "item");
+            doc.addAttribute(item, "id", Integer.toString(i));
+            doc.addTextChild(doc.addElement(item, "name"), "Product "+i);
+        }
+        retained.measure(doc, nodes);
+        return doc;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.DeflaterOutput;
+import com.kodintek.dumbxmlwriter.Element;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class CompressionBenchmark
+ * 
+ * Compares gzipping a large document in two passes (toString, getBytes, GZIPOutputStream), through a Writer
+ * over a GZIPOutputStream, and through a DeflaterOutput. The compressed data is discarded.
+ * 
+ * Each run writes the whole document once : the score is the time per document, and the 'peakHeapMB' counter
+ * the heap used at the peak, beyond the tree itself. The 500 MB document needs a large heap for the two pass route.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class CompressionBenchmark {
+
+    @Param({"50", "500"})
+    int megabytes;
+
+    private Element root;
+
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        root = Trees.log(megabytes);
+    }
+
+    @Benchmark
+    public void twoPass(PeakHeap peak) throws IOException {
+        byte[] bytes = root.toString().getBytes(StandardCharsets.UTF_8);
+        try (GZIPOutputStream out = new GZIPOutputStream(sink, 64 * 1024)) {
+            out.write(bytes);
+        }
+        peak.measure();
+    }
+
+    @Benchmark
+    public void writerOverGzipStream(PeakHeap peak) throws IOException {
+        try (Writer out = new OutputStreamWriter(new GZIPOutputStream(sink, 64 * 1024), StandardCharsets.UTF_8)) {
+            root.writeTo(out);
+        }
+        peak.measure();
+    }
+
+    @Benchmark
+    public void deflaterOutput(PeakHeap peak) throws IOException {
+        try (DeflaterOutput out = new DeflaterOutput(Channels.newChannel(sink))) {
+            root.writeTo(out);
+        }
+        peak.measure();
+    }
+}
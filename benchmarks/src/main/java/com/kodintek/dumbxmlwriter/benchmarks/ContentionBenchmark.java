@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.ConcurrentElement;
+import com.kodintek.dumbxmlwriter.Element;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class ContentionBenchmark
+ * 
+ * Measures 16 threads appending records to a shared root : a ConcurrentElement,
+ * compared to a plain Element guarded by a global lock.
+ * 
+ * Each iteration appends a fixed batch of records to a fresh root, so that the tree does not
+ * grow without bounds.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = 20000)
+@Measurement(iterations = 10, batchSize = 20000)
+@Threads(16)
+@Fork(1)
+public class ContentionBenchmark {
+
+    private Element lockedRoot;
+    private ConcurrentElement concurrentRoot;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        lockedRoot = new Element("root");
+        concurrentRoot = new ConcurrentElement("root");
+    }
+
+    private static Element record() {
+        Element record = new Element("record");
+        record.addAttribute("type", "event");
+        record.addTextChild("payload");
+        return record;
+    }
+
+    @Benchmark
+    public void globalLock() {
+        Element record = record();
+        synchronized(lockedRoot) {
+            lockedRoot.addChild(record);
+        }
+    }
+
+    @Benchmark
+    public void concurrent() {
+        concurrentRoot.addChild(record());
+    }
+}
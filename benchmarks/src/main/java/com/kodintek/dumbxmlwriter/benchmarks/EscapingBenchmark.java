@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class EscapingBenchmark
+ * 
+ * Measures the cost of escaping attribute and text values, on values with no special character
+ * (clean) and with many of them (dirty), compared to writing them as they are.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EscapingBenchmark {
+
+    @Param({"clean", "dirty"})
+    String input;
+
+    private Element root;
+    private StringBuilder sb;
+
+    @Setup
+    public void setUp() {
+        String value = "clean".equals(input)
+                ? "Tom and Jerry are chasing each other around the house, again and again"
+                : "Tom & Jerry are \"chasing\" each other <around> the house, & again & again";
+        root = new Element("root");
+        for(int i = 0 ; i<100 ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("title", value);
+            item.addTextChild(value);
+        }
+        sb = new StringBuilder(32 * 1024);
+    }
+
+    @Benchmark
+    public StringBuilder escaped() {
+        sb.setLength(0);
+        root.writeTo(sb, OutputFormat.COMPACT);
+        return sb;
+    }
+
+    @Benchmark
+    public StringBuilder raw() {
+        sb.setLength(0);
+        root.writeTo(sb, OutputFormat.COMPACT.withoutEscaping());
+        return sb;
+    }
+}
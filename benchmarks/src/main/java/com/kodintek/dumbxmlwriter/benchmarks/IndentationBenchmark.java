@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class IndentationBenchmark
+ * 
+ * Measures the pretty serialization of a depth-64 tree (every element of the chain having
+ * a few leaves), where indentation is most of the output.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndentationBenchmark {
+
+    private static final OutputFormat TABS = new OutputFormat("\t", "\n");
+
+    private Element root;
+    private StringBuilder sb;
+
+    @Setup
+    public void setUp() {
+        root = new Element("root");
+        Element current = root;
+        for(int i = 1 ; i<64 ; i++) {
+            for(int j = 0 ; j<4 ; j++) {
+                new Element("leaf", current).addTextChild("value");
+            }
+            current = new Element("level", current);
+        }
+        sb = new StringBuilder(root.toString().length());
+    }
+
+    @Benchmark
+    public StringBuilder spaces() {
+        sb.setLength(0);
+        root.writeTo(sb, OutputFormat.PRETTY);
+        return sb;
+    }
+
+    @Benchmark
+    public StringBuilder tabs() {
+        sb.setLength(0);
+        root.writeTo(sb, TABS);
+        return sb;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.ChannelOutput;
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.MappedFileOutput;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class MappedFileBenchmark
+ * 
+ * Compares writing a multi-gigabyte document to a file through a Writer over a BufferedOutputStream,
+ * through a ChannelOutput and its direct buffer, and through a MappedFileOutput.
+ * 
+ * Each run writes the whole document once : the score is the time per document. The file is left
+ * to the page cache, none of the routes waits for the storage device.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class MappedFileBenchmark {
+
+    @Param({"1024", "5120"})
+    int megabytes;
+
+    private Element root;
+    private File file;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Trees.log(megabytes);
+        file = File.createTempFile("dumbxml-bench", ".xml");
+        buffer = ByteBuffer.allocateDirect(ChannelOutput.DEFAULT_CAPACITY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void bufferedStream() throws IOException {
+        try (Writer out = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024), StandardCharsets.UTF_8)) {
+            root.writeTo(out);
+        }
+    }
+
+    @Benchmark
+    public void fileChannel() throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.truncate(0);
+        try (ChannelOutput out = new ChannelOutput(channel, buffer)) {
+            root.writeTo(out);
+        }
+    }
+
+    @Benchmark
+    public void mapped() throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.truncate(0);
+        try (MappedFileOutput out = new MappedFileOutput(channel)) {
+            root.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import com.kodintek.dumbxmlwriter.SerializationMetrics;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class MetricsBenchmark
+ * 
+ * Measures the cost of the serialization metrics : the same catalog written into a reused StringBuilder
+ * with a format without metrics ('disabled', to compare with SerializationBenchmark.compactWriteTo) and with metrics ('enabled').
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"100", "10000"})
+    int items;
+
+    private Element root;
+    private StringBuilder sb;
+    private OutputFormat metered;
+
+    @Setup
+    public void setUp() {
+        root = Trees.catalog(items);
+        sb = new StringBuilder(root.toString().length());
+        metered = OutputFormat.COMPACT.withMetrics(new SerializationMetrics());
+    }
+
+    @Benchmark
+    public StringBuilder disabled() {
+        sb.setLength(0);
+        root.writeTo(sb, OutputFormat.COMPACT);
+        return sb;
+    }
+
+    @Benchmark
+    public StringBuilder enabled() {
+        sb.setLength(0);
+        root.writeTo(sb, metered);
+        return sb;
+    }
+}
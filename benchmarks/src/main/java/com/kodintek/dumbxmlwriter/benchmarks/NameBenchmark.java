@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.Name;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class NameBenchmark
+ * 
+ * Measures the heap retained by a repetitive document whose names are read as fresh strings,
+ * as a parser would give them : 'fromStrings' builds it with raw strings, 'fromNames' with names looked up once,
+ * and 'nameCopies' only keeps the fresh strings, which is what every element kept before names were shared.
+ * The retained bytes per element are reported in the 'retainedPerElement' counter.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class NameBenchmark {
+
+    @Param({"100000"})
+    int items;
+
+    @Benchmark
+    public Object fromStrings(Retained retained) {
+        Element root = new Element("catalog");
+        for(int i = 0 ; i<items ; i++) {
+            Element item = new Element(fresh("item"), root);
+            item.addAttribute(fresh("id"), "i");
+            new Element(fresh("name"), item);
+        }
+        retained.measure(root, items * 2);
+        return root;
+    }
+
+    @Benchmark
+    public Object fromNames(Retained retained) {
+        Name itemName = Name.of("item");
+        Name id = Name.of("id");
+        Name name = Name.of("name");
+        Element root = new Element("catalog");
+        for(int i = 0 ; i<items ; i++) {
+            Element item = Element.of(itemName, root);
+            item.addAttribute(id, "i");
+            Element.of(name, item);
+        }
+        retained.measure(root, items * 2);
+        return root;
+    }
+
+    @Benchmark
+    public Object nameCopies(Retained retained) {
+        String[] names = new String[items * 3];
+        for(int i = 0 ; i<items ; i++) {
+            names[3*i] = fresh("item");
+            names[3*i+1] = fresh("id");
+            names[3*i+2] = fresh("name");
+        }
+        retained.measure(names, items * 2);
+        return names;
+    }
+
+    /**
+     * Returns a copy of the string, as a parser reading the document would
+     */
+    private static String fresh(String s) {
+        return new String(s.toCharArray());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Class PeakHeap
+ * 
+ * Measures the peak heap of a benchmark iteration : the peaks of the heap memory pools are reset once the garbage
+ * has been collected, and what they reached above the used heap of that moment is reported, in megabytes, in the 'peakHeapMB' counter.
+ * As the pools peak at different times, this is an upper bound. With several operations per iteration, it is the peak of them all.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class PeakHeap {
+    /**
+     * Used heap before the benchmark.
+     */
+    private long before ;
+    /**
+     * Megabytes of heap used at the peak, above what was used before.
+     */
+    public double peakHeapMB ;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        for(int i = 0 ; i<3 ; i++) {
+            System.gc();
+        }
+        before = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                before += pool.getUsage().getUsed();
+            }
+        }
+    }
+
+    /**
+     * Reads the peak reached since the setup
+     */
+    void measure() {
+        long peak = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        peakHeapMB = (double) (peak - before) / (1024 * 1024);
+    }
+}
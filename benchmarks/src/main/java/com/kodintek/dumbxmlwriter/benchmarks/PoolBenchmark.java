@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.ElementPool;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class PoolBenchmark
+ * 
+ * Measures building and writing a small response tree per request, with new elements each time
+ * or with elements taken from a pool. Run with '-prof gc' : gc.alloc.rate.norm gives the bytes allocated per request.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PoolBenchmark {
+
+    private static final String[] IDS = {"1", "2", "3", "4", "5", "6", "7", "8"};
+
+    private final ElementPool pool = new ElementPool();
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    @Benchmark
+    public StringBuilder fresh() throws IOException {
+        out.setLength(0);
+        Element response = new Element("response");
+        fill(response, null);
+        response.writeTo(out, OutputFormat.COMPACT);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder pooled() throws IOException {
+        out.setLength(0);
+        try(ElementPool.Scope scope = pool.open()) {
+            Element response = scope.element("response");
+            fill(response, scope);
+            response.writeTo(out, OutputFormat.COMPACT);
+        }
+        return out;
+    }
+
+    /**
+     * Adds the content of the response, with new elements if there is no scope
+     */
+    private static void fill(Element response, ElementPool.Scope scope) {
+        response.addAttribute("version", "1.0");
+        Element status = scope == null ? new Element("status", response) : scope.element("status", response);
+        status.addTextChild("ok");
+        for(String id : IDS) {
+            Element item = scope == null ? new Element("item", response) : scope.element("item", response);
+            item.addAttribute("id", id);
+            item.addAttribute("type", "product");
+            Element name = scope == null ? new Element("name", item) : scope.element("name", item);
+            name.addTextChild("Product");
+        }
+    }
+}
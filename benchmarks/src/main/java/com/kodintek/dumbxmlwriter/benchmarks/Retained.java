@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Class Retained
+ * 
+ * Measures the heap retained by what a single shot benchmark builds : the used heap is read once the garbage
+ * has been collected, before and after, and the difference per element is reported in the 'retainedPerElement' counter.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class Retained {
+    /**
+     * Used heap before the benchmark.
+     */
+    private long before ;
+    /**
+     * Bytes retained per element.
+     */
+    public double retainedPerElement ;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        before = usedHeap();
+    }
+
+    /**
+     * Reads the heap retained by what has been built
+     * 
+     * @param kept what has been built, still referenced while the heap is read
+     * @param elements the number of elements built
+     */
+    void measure(Object kept, int elements) {
+        retainedPerElement = (double) (usedHeap() - before) / elements;
+        if(kept == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Returns the heap used once the garbage has been collected
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0 ; i<3 ; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
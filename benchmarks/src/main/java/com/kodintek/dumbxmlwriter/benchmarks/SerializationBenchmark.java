@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class SerializationBenchmark
+ * 
+ * Measures the serialization of a catalog, pretty and compact, into a new String
+ * (toString) and into a reused StringBuilder (writeTo). toString grows its builder while writing :
+ * it is compared with a builder sized beforehand with getLength, and with getLength alone.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"100", "10000"})
+    int items;
+
+    private Element root;
+    private StringBuilder sb;
+
+    @Setup
+    public void setUp() {
+        root = Trees.catalog(items);
+        sb = new StringBuilder(root.toString().length());
+    }
+
+    @Benchmark
+    public String prettyToString() {
+        return root.toString();
+    }
+
+    @Benchmark
+    public String compactToString() {
+        return root.toString(true);
+    }
+
+    @Benchmark
+    public StringBuilder prettyWriteTo() {
+        sb.setLength(0);
+        root.writeTo(sb, OutputFormat.PRETTY);
+        return sb;
+    }
+
+    @Benchmark
+    public StringBuilder compactWriteTo() {
+        sb.setLength(0);
+        root.writeTo(sb, OutputFormat.COMPACT);
+        return sb;
+    }
+
+    @Benchmark
+    public String prettyPresized() {
+        StringBuilder presized = new StringBuilder((int) root.getLength(OutputFormat.PRETTY));
+        root.writeTo(presized, OutputFormat.PRETTY);
+        return presized.toString();
+    }
+
+    @Benchmark
+    public long prettyLength() {
+        return root.getLength(OutputFormat.PRETTY);
+    }
+}
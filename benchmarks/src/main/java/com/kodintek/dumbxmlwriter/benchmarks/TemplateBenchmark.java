@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import com.kodintek.dumbxmlwriter.Template;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class TemplateBenchmark
+ * 
+ * Compares building and serializing a message tree for each message with rendering
+ * a precompiled template of the same shape, where only three values change.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TemplateBenchmark {
+
+    private Template template;
+    private Map<String, Object> values;
+    private StringBuilder sb;
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        template = Template.compile(message("${id}", "${user}", "${amount}"), OutputFormat.COMPACT);
+        values = new HashMap<>();
+        sb = new StringBuilder(4096);
+    }
+
+    /**
+     * Builds a message : a static envelope around three changing values.
+     */
+    private static Element message(String id, String user, String amount) {
+        Element envelope = new Element("envelope");
+        envelope.addAttribute("xmlns", "http://example.com/schema/payment");
+        envelope.addAttribute("version", "2.1");
+        Element header = new Element("header", envelope);
+        for(int i = 0 ; i<20 ; i++) {
+            Element field = new Element("field", header);
+            field.addAttribute("name", "header"+i);
+            field.addTextChild("static header value "+i);
+        }
+        Element body = new Element("payment", envelope);
+        body.addAttribute("id", id);
+        new Element("user", body).addTextChild(user);
+        new Element("amount", body).addTextChild(amount);
+        return envelope;
+    }
+
+    @Benchmark
+    public StringBuilder buildAndSerialize() {
+        int i = counter++;
+        sb.setLength(0);
+        message(Integer.toString(i), "user"+i, "12.50").writeTo(sb, OutputFormat.COMPACT);
+        return sb;
+    }
+
+    @Benchmark
+    public StringBuilder template() throws Exception {
+        int i = counter++;
+        values.put("id", i);
+        values.put("user", "user"+i);
+        values.put("amount", "12.50");
+        sb.setLength(0);
+        template.render(values, sb);
+        return sb;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import com.kodintek.dumbxmlwriter.OutputFormat;
+import java.io.CharArrayReader;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class TextPayloadBenchmark
+ * 
+ * Measures adding and serializing a large text child (such as a base64 attachment).
+ * 
+ * The 'from' benchmarks start from a payload the caller holds in a buffer and write the element :
+ * through a String copy as before, or handing the buffer itself as a CharSequence, a char[] range or a Reader.
+ * Run with '-prof gc' to compare the bytes allocated per operation.
+ * 
+ * @author Alix Ducros
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TextPayloadBenchmark {
+
+    @Param({"1024", "1048576", "10485760"})
+    int length;
+
+    private String payload;
+    private char[] chars;
+    private StringBuilder buffer;
+    private Element element;
+    private StringBuilder sb;
+
+    @Setup
+    public void setUp() {
+        chars = new char[length];
+        Arrays.fill(chars, 'A');
+        payload = new String(chars);
+        buffer = new StringBuilder(payload);
+        element = build();
+        sb = new StringBuilder(length + 64);
+    }
+
+    @Benchmark
+    public Element build() {
+        Element e = new Element("attachment");
+        e.addTextChild(payload);
+        return e;
+    }
+
+    @Benchmark
+    public StringBuilder serialize() {
+        sb.setLength(0);
+        element.writeTo(sb, OutputFormat.COMPACT);
+        return sb;
+    }
+
+    @Benchmark
+    public StringBuilder fromString() {
+        Element e = new Element("attachment");
+        e.addTextChild(buffer.toString());
+        return write(e);
+    }
+
+    @Benchmark
+    public StringBuilder fromCharSequence() {
+        Element e = new Element("attachment");
+        e.addTextChild(buffer, true);
+        return write(e);
+    }
+
+    @Benchmark
+    public StringBuilder fromChars() {
+        Element e = new Element("attachment");
+        e.addTextChild(chars, 0, chars.length, true);
+        return write(e);
+    }
+
+    @Benchmark
+    public StringBuilder fromReader() {
+        Element e = new Element("attachment");
+        e.addTextChild(new CharArrayReader(chars), true);
+        return write(e);
+    }
+
+    private StringBuilder write(Element e) {
+        sb.setLength(0);
+        e.writeTo(sb, OutputFormat.COMPACT);
+        return sb;
+    }
+}
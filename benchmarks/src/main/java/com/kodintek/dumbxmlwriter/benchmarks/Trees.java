@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter.benchmarks;
+
+import com.kodintek.dumbxmlwriter.Element;
+import java.util.Random;
+
+/**
+ * Class Trees
+ * 
+ * Builds the Element trees shared by the benchmarks.
+ * 
+ * @author Alix Ducros
+ */
+final class Trees {
+
+    /**
+     * Length of the text of a log entry.
+     */
+    private static final int ENTRY_TEXT_LENGTH = 4096;
+    /**
+     * Number of distinct log entry texts, shared by the entries.
+     */
+    private static final int ENTRY_TEXTS = 64;
+    private static final String[] WORDS = {"user", "session", "opened", "closed", "request", "GET", "POST", "/api/items",
+        "200", "404", "latency", "ms", "cache", "hit", "miss", "node", "eu-west", "retry", "timeout", "ok"};
+
+    private Trees() {
+    }
+
+    /**
+     * Builds a catalog : a root with the given number of items, each one having two attributes,
+     * a text child and a child element.
+     * 
+     * @param items the number of items under the root
+     * @return the root of the tree
+     */
+    static Element catalog(int items) {
+        Element root = new Element("catalog");
+        root.addAttribute("version", "1.0");
+        for(int i = 0 ; i<items ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("id", Integer.toString(i));
+            item.addAttribute("type", "product");
+            Element name = new Element("name", item);
+            name.addTextChild("Product number "+i);
+        }
+        return root;
+    }
+
+    /**
+     * Builds a wide tree : a root with the given number of empty children.
+     * 
+     * @param children the number of children under the root
+     * @return the root of the tree
+     */
+    static Element wide(int children) {
+        Element root = new Element("root");
+        for(int i = 0 ; i<children ; i++) {
+            new Element("child", root);
+        }
+        return root;
+    }
+
+    /**
+     * Builds a deep tree : a chain of elements, each one being the only child of the previous one.
+     * 
+     * @param depth the number of elements in the chain
+     * @return the root of the tree
+     */
+    static Element deep(int depth) {
+        Element root = new Element("root");
+        Element current = root;
+        for(int i = 1 ; i<depth ; i++) {
+            current = new Element("child", current);
+        }
+        current.addTextChild("leaf");
+        return root;
+    }
+
+    /**
+     * Builds a log : a root with entries of 4 KB of text each, up to about the given size once written.
+     * The texts are shared by the entries, so that the tree itself stays small whatever the size of the document.
+     * 
+     * @param megabytes the size of the document
+     * @return the root of the tree
+     */
+    static Element log(int megabytes) {
+        Random random = new Random(42);
+        String[] texts = new String[ENTRY_TEXTS];
+        for(int i = 0 ; i<ENTRY_TEXTS ; i++) {
+            StringBuilder sb = new StringBuilder(ENTRY_TEXT_LENGTH);
+            while(sb.length() < ENTRY_TEXT_LENGTH) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(random.nextInt(100000)).append(' ');
+            }
+            sb.setLength(ENTRY_TEXT_LENGTH);
+            texts[i] = sb.toString();
+        }
+        Element root = new Element("log");
+        long entries = (long) megabytes * 1024 * 1024 / (ENTRY_TEXT_LENGTH + 40);
+        for(int i = 0 ; i<entries ; i++) {
+            Element entry = new Element("entry", root);
+            entry.addAttribute("id", Integer.toString(i));
+            entry.addAttribute("level", "INFO");
+            entry.addTextChild(texts[i % ENTRY_TEXTS], false);
+        }
+        return root;
+    }
+}
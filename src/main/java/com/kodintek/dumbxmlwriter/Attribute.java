@@ -17,7 +17,7 @@
 
 package com.kodintek.dumbxmlwriter;
 
-import java.util.Map;
+import java.io.IOException;
 
 /**
  * Class Attribute
@@ -28,7 +28,7 @@ import java.util.Map;
  */
 class Attribute{
     private final String value;
-    private final String name;
+    private final Name name;
 
     /**
      * Initializes the Attribute
@@ -41,10 +41,10 @@ class Attribute{
      * @param value the value of the attribute
      */
     Attribute(String name, String value) {
-        if(name == null || name.trim().length() == 0) {
+        this.name = Name.lookup(name) ;
+        if(this.name == null) {
             throw new IllegalArgumentException("'name' parameter cannot be null nor empty");
         }
-        this.name = name.trim() ;
         
         if(value == null) {
             this.value = "" ;
@@ -66,7 +66,7 @@ class Attribute{
      * @return name
      */
     public String getName() {
-        return name;
+        return name.toString();
     }
 
     /**
@@ -75,10 +75,24 @@ class Attribute{
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder(name.trim());
-        sb.append("=\"");
-        sb.append(value);
-        sb.append('"');
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeTo(sb, OutputFormat.PRETTY);
+        } catch (IOException e) {
+            //StringBuilder never throws IOException
+            throw new IllegalStateException(e);
+        }
         return sb.toString() ;
     }
+
+    /**
+     * Writes the attribute formatted accordingly to the XML syntax
+     * 
+     * @param out the output to write into
+     * @param format the format telling whether the value is to be escaped
+     * @throws IOException if the output fails
+     */
+    void writeTo(Appendable out, OutputFormat format) throws IOException {
+        Attributes.write(out, name, value, format);
+    }
 }
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class Attributes
+ * 
+ * The attributes of an element, kept in insertion order in two flat arrays (names and values).
+ * 
+ * The arrays are only allocated with the first attribute. Names are looked up by scanning
+ * the array, which is faster than hashing for the few attributes most elements have;
+ * above INDEX_THRESHOLD attributes, a hashed index of the names is built.
+ * 
+ * @author Alix Ducros
+ */
+final class Attributes {
+    /**
+     * Number of attributes above which names are looked up through a hashed index.
+     */
+    static final int INDEX_THRESHOLD = 8;
+    /**
+     * Capacity of the arrays when the first attribute is added.
+     */
+    private static final int INITIAL_CAPACITY = 2;
+    /**
+     * The names of the attributes, in insertion order.
+     */
+    private Name[] names ;
+    /**
+     * The values of the attributes, at the same index as their name.
+     */
+    private String[] values ;
+    /**
+     * Number of attributes.
+     */
+    private int size ;
+    /**
+     * Index of each name in the arrays, only built above INDEX_THRESHOLD attributes.
+     */
+    private Map<Name, Integer> index ;
+
+    /**
+     * Returns the number of attributes
+     * 
+     * @return size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if there is an attribute with the given name
+     * 
+     * @param name the name of the attribute
+     * @return true if the name is already used
+     */
+    boolean contains(Name name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Returns the value of the attribute with the given name
+     * 
+     * @param name the name of the attribute
+     * @return the value, or null if there is no such attribute
+     */
+    String get(Name name) {
+        int i = indexOf(name);
+        return i < 0 ? null : values[i];
+    }
+
+    /**
+     * Returns the position of the attribute with the given name
+     * 
+     * @param name the name of the attribute
+     * @return the position, or -1 if there is no such attribute
+     */
+    private int indexOf(Name name) {
+        if(index != null) {
+            Integer i = index.get(name);
+            return i == null ? -1 : i;
+        }
+        for(int i = 0 ; i<size ; i++) {
+            if(names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds an attribute after the existing ones, without checking whether its name is already used
+     * 
+     * @param name the name of the attribute
+     * @param value the value of the attribute, not null
+     */
+    void add(Name name, String value) {
+        if(names == null) {
+            names = new Name[INITIAL_CAPACITY];
+            values = new String[INITIAL_CAPACITY];
+        } else if(size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        names[size] = name;
+        values[size] = value;
+        size++;
+        if(index != null) {
+            index.put(name, size - 1);
+        } else if(size > INDEX_THRESHOLD) {
+            index = new HashMap<>();
+            for(int i = 0 ; i<size ; i++) {
+                index.put(names[i], i);
+            }
+        }
+    }
+
+    /**
+     * Removes every attribute, keeping the arrays to be filled again
+     */
+    void clear() {
+        if(names != null) {
+            Arrays.fill(names, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+        }
+        if(index != null) {
+            index.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns the name of an attribute
+     * 
+     * @param i the position of the attribute
+     * @return name
+     */
+    Name getName(int i) {
+        return names[i];
+    }
+
+    /**
+     * Returns the value of an attribute
+     * 
+     * @param i the position of the attribute
+     * @return value
+     */
+    String getValue(int i) {
+        return values[i];
+    }
+
+    /**
+     * Writes every attribute, each one preceded by a space, in insertion order
+     * 
+     * @param out the output to write into
+     * @param format the format telling whether the values are to be escaped
+     * @throws IOException if the output fails
+     */
+    void writeTo(Appendable out, OutputFormat format) throws IOException {
+        for(int i = 0 ; i<size ; i++) {
+            out.append(' ');
+            write(out, names[i], values[i], format);
+        }
+    }
+
+    /**
+     * Returns the length of every attribute, each one preceded by a space
+     * 
+     * @param format the format telling whether the values are to be escaped
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    long length(OutputFormat format, boolean utf8) {
+        long length = 0;
+        for(int i = 0 ; i<size ; i++) {
+            length += 1 + length(names[i], values[i], format, utf8);
+        }
+        return length;
+    }
+
+    /**
+     * Returns the length of an attribute formatted accordingly to the XML syntax 'name="value"'
+     * 
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     * @param format the format telling whether the value is to be escaped
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    static long length(Name name, String value, OutputFormat format, boolean utf8) {
+        return name.length(utf8) + 3 + format.attributeValueLength(value, utf8);
+    }
+
+    /**
+     * Writes an attribute formatted accordingly to the XML syntax 'name="value"'
+     * 
+     * @param out the output to write into
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     * @param format the format telling whether the value is to be escaped
+     * @throws IOException if the output fails
+     */
+    static void write(Appendable out, Name name, String value, OutputFormat format) throws IOException {
+        if(out instanceof MeteredOutput) {
+            ((MeteredOutput) out).attributes++;
+        }
+        name.writeTo(out);
+        out.append("=\"");
+        format.attributeValue(out, value);
+        out.append('"');
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Class BatchWriter
+ * 
+ * Writes many small documents back to back into a single output, such as events into a log file
+ * or a message batch. The documents are written into one buffer, reused for the whole batch,
+ * which is handed to the output only once it holds flushThreshold characters.
+ * 
+ * The documents are separated according to the framing :
+ * - NEWLINE : each document followed by a line break, one per line with OutputFormat.COMPACT
+ * - ENVELOPE : every document as a child of an envelope element, written when the batch is closed
+ * - LENGTH_PREFIXED : each document preceded by its length in UTF-8 bytes and a line break
+ * 
+ * Typical use :
+ * 
+ * try(BatchWriter batch = new BatchWriter(writer, OutputFormat.COMPACT, BatchWriter.Framing.NEWLINE)) {
+ *     batch.writeAll(events);
+ * }
+ * 
+ * @author Alix Ducros
+ */
+public class BatchWriter implements Closeable, Flushable {
+    /**
+     * Number of buffered characters the buffer is handed to the output at, when none is given.
+     */
+    public static final int DEFAULT_FLUSH_THRESHOLD = 64 * 1024;
+    /**
+     * Name of the envelope element when none is given.
+     */
+    public static final String DEFAULT_ENVELOPE = "batch";
+
+    /**
+     * How the documents of a batch are separated.
+     */
+    public enum Framing {
+        NEWLINE, ENVELOPE, LENGTH_PREFIXED
+    }
+
+    /**
+     * The output the batch is written into.
+     */
+    private final Appendable out ;
+    /**
+     * The layout of the documents.
+     */
+    private final OutputFormat format ;
+    /**
+     * How the documents are separated.
+     */
+    private final Framing framing ;
+    /**
+     * The envelope element, or null unless the framing is ENVELOPE.
+     */
+    private final Name envelope ;
+    /**
+     * Number of buffered characters the buffer is handed to the output at.
+     */
+    private final int flushThreshold ;
+    /**
+     * The documents not handed to the output yet.
+     */
+    private final StringBuilder buffer ;
+    /**
+     * The document being written, when its length is written before it : reused from one document to the next.
+     */
+    private StringBuilder document ;
+    /**
+     * Chars copied out of the buffer for a Writer, which would otherwise turn the buffer into a String.
+     */
+    private char[] transfer ;
+    /**
+     * Number of documents written.
+     */
+    private long count ;
+    /**
+     * True once the start tag of the envelope has been written.
+     */
+    private boolean started ;
+    /**
+     * True once the batch has been closed.
+     */
+    private boolean closed ;
+
+    /**
+     * Initializes the writer, the envelope being named DEFAULT_ENVELOPE if the documents are enveloped
+     * 
+     * @throws IllegalArgumentException if the output, the format or the framing is null
+     * 
+     * @param out the output to write into
+     * @param format the layout of the documents
+     * @param framing how the documents are separated
+     */
+    public BatchWriter(Appendable out, OutputFormat format, Framing framing) {
+        this(out, format, framing, DEFAULT_ENVELOPE, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * Initializes the writer
+     * 
+     * @throws IllegalArgumentException if the output, the format or the framing is null,
+     * if the envelope name is null or empty while the documents are enveloped, or if the threshold is not positive
+     * 
+     * @param out the output to write into
+     * @param format the layout of the documents
+     * @param framing how the documents are separated
+     * @param envelope the name of the envelope element, only used with the ENVELOPE framing
+     * @param flushThreshold the number of buffered characters the buffer is handed to the output at
+     */
+    public BatchWriter(Appendable out, OutputFormat format, Framing framing, String envelope, int flushThreshold) {
+        if(out == null || format == null || framing == null) {
+            throw new IllegalArgumentException("output, format and framing cannot be null.");
+        }
+        if(flushThreshold <= 0) {
+            throw new IllegalArgumentException("the threshold must be positive.");
+        }
+        this.out = out;
+        this.format = format;
+        this.framing = framing;
+        this.flushThreshold = flushThreshold;
+        if(framing == Framing.ENVELOPE) {
+            this.envelope = Name.lookup(envelope);
+            if(this.envelope == null) {
+                throw new IllegalArgumentException("the envelope must have a non-empty name.");
+            }
+        } else {
+            this.envelope = null;
+        }
+        this.buffer = new StringBuilder(flushThreshold + flushThreshold / 4);
+    }
+
+    /**
+     * Returns the number of documents written so far
+     * 
+     * @return count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes a document, as a root element whatever its parent
+     * 
+     * @throws IllegalArgumentException if the element is null
+     * @throws IllegalStateException if the batch has been closed
+     * 
+     * @param element the root of the document
+     * @throws IOException if the output fails
+     */
+    public void write(Element element) throws IOException {
+        if(element == null) {
+            throw new IllegalArgumentException("the document cannot be null.");
+        }
+        if(closed) {
+            throw new IllegalStateException("the batch has been closed.");
+        }
+        switch(framing) {
+            case ENVELOPE:
+                if(!started) {
+                    started = true;
+                    buffer.append('<');
+                    envelope.writeTo(buffer);
+                    buffer.append('>');
+                    format.newline(buffer);
+                }
+                writeDocument(element, buffer, 1);
+                break;
+            case LENGTH_PREFIXED:
+                //The document is written aside first, as its length comes before it
+                if(document == null) {
+                    document = new StringBuilder();
+                }
+                document.setLength(0);
+                writeDocument(element, document, 0);
+                long length = Utf8Output.encodedLength(document, 0, document.length());
+                if(length > Integer.MAX_VALUE) {
+                    throw new IOException("the document is too large to be length-prefixed : "+length+" bytes.");
+                }
+                buffer.append(length).append('\n').append(document);
+                break;
+            default:
+                writeDocument(element, buffer, 0);
+                buffer.append('\n');
+                break;
+        }
+        count++;
+        if(buffer.length() >= flushThreshold) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes every document, in order
+     * 
+     * @throws IllegalArgumentException if one of the elements is null
+     * @throws IllegalStateException if the batch has been closed
+     * 
+     * @param elements the roots of the documents
+     * @throws IOException if the output fails
+     */
+    public void writeAll(Iterable<? extends Element> elements) throws IOException {
+        for(Element element : elements) {
+            write(element);
+        }
+    }
+
+    /**
+     * Hands the buffered documents to the output, then flushes it if it can be flushed
+     * 
+     * @throws IOException if the output fails
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if(out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * Ends the envelope if there is one, hands the buffered documents to the output, then closes it if it can be closed
+     * 
+     * @throws IOException if the output fails
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        if(framing == Framing.ENVELOPE) {
+            if(started) {
+                buffer.append("</");
+                envelope.writeTo(buffer);
+                buffer.append('>');
+            } else {
+                buffer.append('<');
+                envelope.writeTo(buffer);
+                buffer.append("/>");
+            }
+            format.newline(buffer);
+        }
+        drain();
+        if(out instanceof Closeable) {
+            ((Closeable) out).close();
+        } else if(out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * Writes a document into a builder
+     * 
+     * @param element the root of the document
+     * @param sb the builder to write into
+     * @param depth the depth to write it at
+     * @throws IOException never, as it is written into a StringBuilder
+     */
+    private void writeDocument(Element element, StringBuilder sb, int depth) throws IOException {
+        SerializationMetrics metrics = format.getMetrics();
+        if(metrics != null) {
+            metrics.write(element, sb, format, depth);
+        } else {
+            element.write(sb, format, depth);
+        }
+    }
+
+    /**
+     * Hands the buffer to the output, and empties it
+     * 
+     * @throws IOException if the output fails
+     */
+    private void drain() throws IOException {
+        int length = buffer.length();
+        if(length == 0) {
+            return;
+        }
+        if(out instanceof Writer) {
+            if(transfer == null || transfer.length < length) {
+                transfer = new char[Math.max(length, flushThreshold)];
+            }
+            buffer.getChars(0, length, transfer, 0);
+            ((Writer) out).write(transfer, 0, length);
+        } else {
+            out.append(buffer);
+        }
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Class ChannelOutput
+ * 
+ * An output encoding the XML into UTF-8 straight into a ByteBuffer, which is written to a channel
+ * (typically a FileChannel) each time it is full.
+ * 
+ * The buffer can be a direct one, and can be reused from one output to the next.
+ * Writing blocks until the channel has accepted the whole buffer, so at most one buffer
+ * of the document is ever held in memory. Non-blocking channels are not supported.
+ * 
+ * Typical use :
+ * 
+ * try (ChannelOutput out = new ChannelOutput(fileChannel, buffer)) {
+ *     element.writeTo(out);
+ * }
+ * 
+ * @author Alix Ducros
+ */
+public class ChannelOutput extends Utf8Output {
+    /**
+     * Capacity of the buffer when none is given.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    /**
+     * The channel the buffer is written to.
+     */
+    private final WritableByteChannel channel ;
+
+    /**
+     * Initializes the output with a new heap buffer of DEFAULT_CAPACITY bytes
+     * 
+     * @param channel the channel to write to
+     */
+    public ChannelOutput(WritableByteChannel channel) {
+        this(channel, DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * Initializes the output with a new buffer
+     * 
+     * @param channel the channel to write to
+     * @param capacity the capacity of the buffer, in bytes
+     * @param direct if true, the buffer is allocated outside of the heap
+     */
+    public ChannelOutput(WritableByteChannel channel, int capacity, boolean direct) {
+        this(channel, direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+    }
+
+    /**
+     * Initializes the output with an existing buffer, which is cleared first
+     * 
+     * @throws IllegalArgumentException if the channel is null or non-blocking, or if the buffer is null or too small
+     * 
+     * @param channel the channel to write to
+     * @param buffer the buffer to encode into
+     */
+    public ChannelOutput(WritableByteChannel channel, ByteBuffer buffer) {
+        super(buffer);
+        if(channel == null) {
+            throw new IllegalArgumentException("channel cannot be null.");
+        }
+        checkBlocking(channel);
+        this.channel = channel;
+    }
+
+    /**
+     * Writes the whole buffer to the channel
+     * 
+     * @throws IOException if the channel fails
+     */
+    @Override
+    protected void drain() throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes every buffered byte to the channel, then closes it
+     * 
+     * @throws IOException if the channel fails
+     */
+    @Override
+    @SuppressWarnings("try")
+    public void close() throws IOException {
+        //If the channel fails to close after the last bytes have failed, the first failure is thrown
+        //The resource is only declared to be closed last, Java 7 cannot close the field itself
+        try (WritableByteChannel closedLast = channel) {
+            super.close();
+        }
+    }
+}
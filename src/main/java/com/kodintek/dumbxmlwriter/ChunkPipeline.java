@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Class ChunkPipeline
+ * 
+ * An output handing the XML over to another thread as UTF-8 chunks, through a bounded queue :
+ * a producer writes the document into the pipeline while a consumer takes the chunks out
+ * (and writes them to a socket, for instance), each one on its own thread.
+ * 
+ * The pipeline owns a fixed number of chunks, going round from the producer to the consumer and back.
+ * When the consumer is slow, the producer waits for a chunk to be released, so that at most
+ * chunks * chunkSize bytes of the document are ever held in memory.
+ * 
+ * Typical use :
+ * 
+ * ChunkPipeline pipeline = ChunkPipeline.render(element, OutputFormat.COMPACT, executor);
+ * pipeline.transferTo(socketChannel);
+ * 
+ * or, taking the chunks one by one :
+ * 
+ * for(ByteBuffer chunk = pipeline.take() ; chunk != null ; chunk = pipeline.take()) {
+ *     ...
+ *     pipeline.release(chunk);
+ * }
+ * 
+ * @author Alix Ducros
+ */
+public class ChunkPipeline extends Utf8Output {
+    /**
+     * Size of the chunks when none is given, in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    /**
+     * Number of chunks when none is given.
+     */
+    public static final int DEFAULT_CHUNKS = 4;
+    /**
+     * Marks the end of the document in the queue of filled chunks.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    /**
+     * Wakes the producer up in the queue of free chunks when the consumer cancels.
+     */
+    private static final ByteBuffer CANCELLED = ByteBuffer.allocate(0);
+    
+    /**
+     * The chunks waiting to be filled by the producer.
+     */
+    private final BlockingQueue<ByteBuffer> free ;
+    /**
+     * The chunks waiting to be taken by the consumer, then END.
+     */
+    private final BlockingQueue<ByteBuffer> filled ;
+    /**
+     * True once the consumer has given up.
+     */
+    private volatile boolean cancelled ;
+    /**
+     * The reason the producer failed, or null.
+     */
+    private volatile Throwable failure ;
+    /**
+     * True once the producer has closed the pipeline.
+     */
+    private boolean closed ;
+
+    /**
+     * Initializes the pipeline with DEFAULT_CHUNKS chunks of DEFAULT_CHUNK_SIZE bytes
+     */
+    public ChunkPipeline() {
+        this(DEFAULT_CHUNK_SIZE, DEFAULT_CHUNKS);
+    }
+
+    /**
+     * Initializes the pipeline
+     * 
+     * @throws IllegalArgumentException if there are less than two chunks, or if they are too small
+     * 
+     * @param chunkSize the size of each chunk, in bytes
+     * @param chunks the number of chunks
+     */
+    public ChunkPipeline(int chunkSize, int chunks) {
+        super(ByteBuffer.allocate(Math.max(chunkSize, 0)));
+        if(chunks < 2) {
+            throw new IllegalArgumentException("the pipeline needs at least two chunks.");
+        }
+        //One more place for CANCELLED, so that the consumer never waits on this queue either
+        this.free = new ArrayBlockingQueue<>(chunks + 1);
+        //One more place for END : as there are only 'chunks' chunks, the producer never waits on this queue
+        this.filled = new ArrayBlockingQueue<>(chunks + 1);
+        for(int i = 1 ; i<chunks ; i++) {
+            free.add(ByteBuffer.allocate(chunkSize));
+        }
+    }
+
+    /**
+     * Writes an element into a new pipeline on the given executor, and returns the pipeline to consume it
+     * 
+     * @param element the element to write
+     * @param format the layout to use
+     * @param executor the executor running the producer
+     * @return the pipeline
+     */
+    public static ChunkPipeline render(Element element, OutputFormat format, Executor executor) {
+        return render(element, format, executor, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNKS);
+    }
+
+    /**
+     * Writes an element into a new pipeline on the given executor, and returns the pipeline to consume it
+     * 
+     * @param element the element to write
+     * @param format the layout to use
+     * @param executor the executor running the producer
+     * @param chunkSize the size of each chunk, in bytes
+     * @param chunks the number of chunks
+     * @return the pipeline
+     */
+    public static ChunkPipeline render(final Element element, final OutputFormat format, Executor executor, int chunkSize, int chunks) {
+        final ChunkPipeline pipeline = new ChunkPipeline(chunkSize, chunks);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    element.writeTo(pipeline, format);
+                    pipeline.close();
+                } catch (IOException | RuntimeException | Error e) {
+                    pipeline.abort(e);
+                }
+            }
+        });
+        return pipeline;
+    }
+
+    /**
+     * Hands the filled chunk over to the consumer, and waits for a free one
+     * 
+     * @throws IOException if the consumer has cancelled, or if the producer is interrupted while waiting
+     */
+    @Override
+    protected void drain() throws IOException {
+        if(cancelled) {
+            throw new IOException("the consumer has cancelled the pipeline.");
+        }
+        buffer.flip();
+        filled.add(buffer);
+        if(closed) {
+            //The last chunk : there is no need to wait for another one
+            buffer = END;
+            return;
+        }
+        ByteBuffer next ;
+        try {
+            next = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the consumer.");
+        }
+        if(next == CANCELLED) {
+            throw new IOException("the consumer has cancelled the pipeline.");
+        }
+        next.clear();
+        buffer = next;
+    }
+
+    /**
+     * Hands the last bytes over to the consumer, and tells it the document is complete
+     * 
+     * @throws IOException if the consumer has cancelled, or if the producer is interrupted while waiting
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed || cancelled) {
+            return;
+        }
+        closed = true;
+        try {
+            super.close();
+        } finally {
+            filled.add(END);
+        }
+    }
+
+    /**
+     * Tells the consumer the document could not be written
+     * 
+     * @param cause the reason the producer failed
+     */
+    public void abort(Throwable cause) {
+        failure = cause;
+        if(!closed) {
+            closed = true;
+            filled.add(END);
+        }
+    }
+
+    /**
+     * Waits for the next chunk of the document
+     * 
+     * @return the chunk, ready to be read, to release once read ; or null once the document is complete
+     * @throws IOException if the producer has failed
+     * @throws InterruptedException if the consumer is interrupted while waiting
+     */
+    public ByteBuffer take() throws IOException, InterruptedException {
+        ByteBuffer chunk = filled.take();
+        if(chunk == END) {
+            //Left in the queue, so that any later take ends as well
+            filled.add(END);
+            if(failure != null) {
+                throw new IOException("the document could not be written.", failure);
+            }
+            return null;
+        }
+        return chunk;
+    }
+
+    /**
+     * Gives a chunk back to the producer, once it has been read
+     * 
+     * Once the pipeline is cancelled, the producer needs no more chunks : releasing one does nothing.
+     * 
+     * @param chunk the chunk returned by take
+     */
+    public void release(ByteBuffer chunk) {
+        if(cancelled) {
+            return;
+        }
+        chunk.clear();
+        free.add(chunk);
+    }
+
+    /**
+     * Gives up the document : the producer fails at its next chunk, instead of waiting for ever
+     */
+    public synchronized void cancel() {
+        if(cancelled) {
+            return;
+        }
+        cancelled = true;
+        free.add(CANCELLED);
+    }
+
+    /**
+     * Writes every chunk of the document to a channel, as they come
+     * 
+     * If the channel fails, the pipeline is cancelled.
+     * 
+     * @throws IllegalArgumentException if the channel is non-blocking
+     * 
+     * @param channel the channel to write to
+     * @throws IOException if the producer or the channel fails
+     * @throws InterruptedException if the consumer is interrupted while waiting
+     */
+    public void transferTo(WritableByteChannel channel) throws IOException, InterruptedException {
+        checkBlocking(channel);
+        boolean done = false;
+        try {
+            for(ByteBuffer chunk = take() ; chunk != null ; chunk = take()) {
+                writeFully(channel, chunk);
+                release(chunk);
+            }
+            done = true;
+        } finally {
+            if(!done) {
+                cancel();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of chunks waiting for the consumer
+     * 
+     * @return number of filled chunks
+     */
+    int pendingChunks() {
+        int pending = filled.size();
+        return filled.contains(END) ? pending - 1 : pending;
+    }
+
+    /**
+     * Returns true once the producer has handed the whole document over, or has failed
+     * 
+     * @return true if no more chunk is coming
+     */
+    boolean isComplete() {
+        return filled.contains(END);
+    }
+}
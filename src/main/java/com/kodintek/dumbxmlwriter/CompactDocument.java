@@ -0,0 +1,636 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class CompactDocument
+ * 
+ * A whole XML document stored in a few flat arrays rather than as one Element object per node,
+ * for documents of millions of nodes.
+ * 
+ * Each node is an index : its parent, first and last children, next sibling, name, text and
+ * first attribute are ints in parallel arrays. Names are numbered once per document, and the texts
+ * and attribute values are copied into a single shared char pool.
+ * 
+ * The builder methods mirror the ones of Element, the node being given as first parameter :
+ * 
+ * CompactDocument doc = new CompactDocument("catalog");
+ * int item = doc.addElement(CompactDocument.ROOT, "item");
+ * doc.addAttribute(item, "id", "1");
+ * doc.addTextChild(doc.addElement(item, "name"), "Product");
+ * 
+ * The document is written exactly as the matching Element tree would be.
+ * 
+ * @author Alix Ducros
+ */
+public final class CompactDocument {
+    /**
+     * The root node of every document.
+     */
+    public static final int ROOT = 0;
+    /**
+     * The index meaning 'no node' (or 'no attribute', or 'no text').
+     */
+    public static final int NONE = -1;
+    /**
+     * Number of nodes the arrays are sized for when no size is given, and initial number of attributes.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+    /**
+     * Largest size of the arrays, as some virtual machines cannot allocate arrays of Integer.MAX_VALUE entries.
+     */
+    static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    
+    /**
+     * The names used in the document, by number.
+     */
+    private final List<Name> names = new ArrayList<>();
+    /**
+     * The number of each name used in the document.
+     */
+    private final Map<Name, Integer> nameNumbers = new HashMap<>();
+    
+    /**
+     * Number of nodes.
+     */
+    private int size ;
+    /**
+     * The parent of each node.
+     */
+    private int[] parents ;
+    /**
+     * The first child of each node.
+     */
+    private int[] firstChildren ;
+    /**
+     * The last child of each node, to add children in constant time.
+     */
+    private int[] lastChildren ;
+    /**
+     * The next sibling of each node.
+     */
+    private int[] nextSiblings ;
+    /**
+     * The number of the name of each node.
+     */
+    private int[] nodeNames ;
+    /**
+     * The start of the text of each node in the char pool, or NONE.
+     */
+    private int[] textStarts ;
+    /**
+     * The length of the text of each node.
+     */
+    private int[] textLengths ;
+    /**
+     * The first attribute of each node.
+     */
+    private int[] firstAttributes ;
+    
+    /**
+     * Number of attributes.
+     */
+    private int attributeCount ;
+    /**
+     * The number of the name of each attribute.
+     */
+    private int[] attributeNames ;
+    /**
+     * The start of the value of each attribute in the char pool.
+     */
+    private int[] valueStarts ;
+    /**
+     * The length of the value of each attribute.
+     */
+    private int[] valueLengths ;
+    /**
+     * The next attribute of the same node.
+     */
+    private int[] nextAttributes ;
+    
+    /**
+     * The texts and attribute values, one after the other.
+     */
+    private char[] chars ;
+    /**
+     * Number of chars used in the pool.
+     */
+    private int charCount ;
+
+    /**
+     * Initializes the document with its root
+     * 
+     * @throws IllegalArgumentException if the name of the root is null or empty
+     * 
+     * @param rootName the name of the root element
+     */
+    public CompactDocument(String rootName) {
+        this(rootName, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes the document with its root, sized for the given number of nodes
+     * 
+     * @throws IllegalArgumentException if the name of the root is null or empty, or if the capacity is not positive
+     * 
+     * @param rootName the name of the root element
+     * @param expectedNodes the number of nodes the document is expected to hold
+     */
+    public CompactDocument(String rootName, int expectedNodes) {
+        if(expectedNodes <= 0) {
+            throw new IllegalArgumentException("the capacity must be positive.");
+        }
+        parents = new int[expectedNodes];
+        firstChildren = new int[expectedNodes];
+        lastChildren = new int[expectedNodes];
+        nextSiblings = new int[expectedNodes];
+        nodeNames = new int[expectedNodes];
+        textStarts = new int[expectedNodes];
+        textLengths = new int[expectedNodes];
+        firstAttributes = new int[expectedNodes];
+        attributeNames = new int[DEFAULT_CAPACITY];
+        valueStarts = new int[DEFAULT_CAPACITY];
+        valueLengths = new int[DEFAULT_CAPACITY];
+        nextAttributes = new int[DEFAULT_CAPACITY];
+        chars = new char[expectedNodes];
+        newNode(elementName(rootName), NONE);
+    }
+
+    /**
+     * Returns the number of nodes of the document
+     * 
+     * @return size
+     */
+    public int size() {
+        return size ;
+    }
+
+    /**
+     * Adds an element at the end of the children of the given node
+     * 
+     * @throws IllegalArgumentException if the name of the element is null or empty
+     * @throws IndexOutOfBoundsException if there is no such parent node
+     * 
+     * @param parent the parent node
+     * @param elementName the name of the element
+     * @return the new node
+     */
+    public int addElement(int parent, String elementName) {
+        return addElement(parent, elementName(elementName));
+    }
+
+    /**
+     * Adds an element at the end of the children of the given node, from a name already looked up
+     * 
+     * @throws IllegalArgumentException if the name of the element is null
+     * @throws IndexOutOfBoundsException if there is no such parent node
+     * 
+     * @param parent the parent node
+     * @param elementName the name of the element
+     * @return the new node
+     */
+    public int addElement(int parent, Name elementName) {
+        if(elementName == null) {
+            throw new IllegalArgumentException("element must have a non-empty name.");
+        }
+        check(parent);
+        int node = newNode(elementName, parent);
+        if(lastChildren[parent] == NONE) {
+            firstChildren[parent] = node;
+        } else {
+            nextSiblings[lastChildren[parent]] = node;
+        }
+        lastChildren[parent] = node;
+        return node;
+    }
+
+    /**
+     * Adds an attribute to the given node
+     * 
+     * @throws InvalidAttributeException if the attribute name is null or empty, or if there is already an attribute with the same name
+     * @throws IndexOutOfBoundsException if there is no such node
+     * 
+     * @param node the node
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     */
+    public void addAttribute(int node, String name, String value) {
+        Name key = Name.lookup(name);
+        if(key == null) {
+            throw new InvalidAttributeException("the name cannot have null or empty value.");
+        }
+        addAttribute(node, key, value);
+    }
+
+    /**
+     * Adds an attribute to the given node, from a name already looked up
+     * 
+     * @throws InvalidAttributeException if the attribute name is null, or if there is already an attribute with the same name
+     * @throws IndexOutOfBoundsException if there is no such node
+     * 
+     * @param node the node
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     */
+    public void addAttribute(int node, Name name, String value) {
+        if(name == null) {
+            throw new InvalidAttributeException("the name cannot have null or empty value.");
+        }
+        check(node);
+        int number = number(name);
+        //The attributes are walked to the last one anyway, to find a duplicate
+        int last = NONE;
+        for(int a = firstAttributes[node] ; a != NONE ; a = nextAttributes[a]) {
+            if(attributeNames[a] == number) {
+                throw new InvalidAttributeException("the element already has an attribute with this name : "+name);
+            }
+            last = a;
+        }
+        if(attributeCount == attributeNames.length) {
+            int capacity = grow(attributeCount, attributeCount + 1);
+            attributeNames = Arrays.copyOf(attributeNames, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueLengths = Arrays.copyOf(valueLengths, capacity);
+            nextAttributes = Arrays.copyOf(nextAttributes, capacity);
+        }
+        int attribute = attributeCount++;
+        String v = value == null ? "" : value;
+        attributeNames[attribute] = number;
+        valueStarts[attribute] = copy(v);
+        valueLengths[attribute] = v.length();
+        nextAttributes[attribute] = NONE;
+        if(last == NONE) {
+            firstAttributes[node] = attribute;
+        } else {
+            nextAttributes[last] = attribute;
+        }
+    }
+
+    /**
+     * Adds a text value to the given node
+     * 
+     * @throws InvalidChildException if the node already has some text value
+     * @throws IndexOutOfBoundsException if there is no such node
+     * 
+     * @param node the node
+     * @param text the text to add to the element
+     */
+    public void addTextChild(int node, String text) {
+        check(node);
+        if(textStarts[node] != NONE) {
+            throw new InvalidChildException("the element has already a text child.");
+        }
+        String trimmed = text.trim();
+        textStarts[node] = copy(trimmed);
+        textLengths[node] = trimmed.length();
+    }
+
+    /**
+     * Returns the name of the given node
+     * 
+     * @param node the node
+     * @return the name of the element
+     */
+    public String getName(int node) {
+        check(node);
+        return names.get(nodeNames[node]).toString();
+    }
+
+    /**
+     * Returns the text value of the given node
+     * 
+     * @param node the node
+     * @return the text, or null if the node has no text value
+     */
+    public String getText(int node) {
+        check(node);
+        return textStarts[node] == NONE ? null : new String(chars, textStarts[node], textLengths[node]);
+    }
+
+    /**
+     * Returns the value of an attribute of the given node
+     * 
+     * @param node the node
+     * @param name the name of the attribute
+     * @return the value, or null if the node has no attribute with this name
+     */
+    public String getAttribute(int node, String name) {
+        check(node);
+        Name key = Name.lookup(name);
+        Integer number = key == null ? null : nameNumbers.get(key);
+        if(number == null) {
+            return null;
+        }
+        for(int a = firstAttributes[node] ; a != NONE ; a = nextAttributes[a]) {
+            if(attributeNames[a] == number) {
+                return new String(chars, valueStarts[a], valueLengths[a]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the parent of the given node
+     * 
+     * @param node the node
+     * @return the parent, or NONE for the root
+     */
+    public int getParent(int node) {
+        check(node);
+        return parents[node];
+    }
+
+    /**
+     * Returns the first child of the given node
+     * 
+     * @param node the node
+     * @return the first child, or NONE if the node has no children
+     */
+    public int getFirstChild(int node) {
+        check(node);
+        return firstChildren[node];
+    }
+
+    /**
+     * Returns the next sibling of the given node
+     * 
+     * @param node the node
+     * @return the next sibling, or NONE if the node is the last child of its parent
+     */
+    public int getNextSibling(int node) {
+        check(node);
+        return nextSiblings[node];
+    }
+
+    /**
+     * Returns a String formatted accordingly to the XML syntax
+     * 
+     * @return the document, nicely indented
+     */
+    @Override
+    public String toString() {
+        return toString(OutputFormat.PRETTY);
+    }
+
+    /**
+     * Returns a String formatted accordingly to the XML syntax
+     * 
+     * @param compacted true to get the document without indentation nor line breaks
+     * @return the document
+     */
+    public String toString(boolean compacted) {
+        return toString(compacted ? OutputFormat.COMPACT : OutputFormat.PRETTY);
+    }
+
+    /**
+     * Returns a String formatted accordingly to the XML syntax
+     * 
+     * @param format the layout to use
+     * @return the document
+     */
+    public String toString(OutputFormat format) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeTo(sb, format);
+        } catch (IOException e) {
+            //StringBuilder never throws IOException
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the document, nicely indented, into the given output
+     * 
+     * @param out the output to write into
+     * @throws IOException if the output fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        writeTo(out, OutputFormat.PRETTY);
+    }
+
+    /**
+     * Writes the document into the given output
+     * 
+     * The tree is walked without recursion, so that even very deep documents can be written.
+     * 
+     * @throws IllegalArgumentException if the format has metrics, which are not recorded here
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @throws IOException if the output fails
+     */
+    public void writeTo(Appendable out, OutputFormat format) throws IOException {
+        format.checkWithoutMetrics("CompactDocument");
+        CharSequence pool = CharBuffer.wrap(chars, 0, charCount);
+        int node = ROOT;
+        int depth = 0;
+        while(true) {
+            if(writeStart(out, format, pool, node, depth)) {
+                if(firstChildren[node] != NONE) {
+                    node = firstChildren[node];
+                    depth++;
+                    continue;
+                }
+                writeEnd(out, format, node, depth);
+            }
+            //Go up until there is a next sibling, closing the elements left
+            while(node != ROOT && nextSiblings[node] == NONE) {
+                node = parents[node];
+                depth--;
+                writeEnd(out, format, node, depth);
+            }
+            if(node == ROOT) {
+                return;
+            }
+            node = nextSiblings[node];
+        }
+    }
+
+    /**
+     * Writes the start tag of a node, its attributes and its text value
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @param pool the char pool
+     * @param node the node
+     * @param depth the depth of the node
+     * @return false if the element has been self-closed, true if its children and end tag are to be written
+     * @throws IOException if the output fails
+     */
+    private boolean writeStart(Appendable out, OutputFormat format, CharSequence pool, int node, int depth) throws IOException {
+        format.indent(out, depth);
+        out.append('<');
+        names.get(nodeNames[node]).writeTo(out);
+        for(int a = firstAttributes[node] ; a != NONE ; a = nextAttributes[a]) {
+            out.append(' ');
+            names.get(attributeNames[a]).writeTo(out);
+            out.append("=\"");
+            format.attributeValue(out, pool, valueStarts[a], valueStarts[a] + valueLengths[a]);
+            out.append('"');
+        }
+        //If there is no text value nor children, the element is made of only one block
+        if(textStarts[node] == NONE && firstChildren[node] == NONE) {
+            out.append("/>");
+            format.newline(out);
+            return false;
+        }
+        out.append('>');
+        format.newline(out);
+        
+        if(textStarts[node] != NONE) {
+            format.indent(out, depth+1);
+            format.text(out, pool, textStarts[node], textStarts[node] + textLengths[node]);
+            format.newline(out);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the end tag of a node
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @param node the node
+     * @param depth the depth of the node
+     * @throws IOException if the output fails
+     */
+    private void writeEnd(Appendable out, OutputFormat format, int node, int depth) throws IOException {
+        format.indent(out, depth);
+        out.append("</");
+        names.get(nodeNames[node]).writeTo(out);
+        out.append('>');
+        format.newline(out);
+    }
+
+    /**
+     * Appends a node with no children, attributes nor text
+     * 
+     * @param name the name of the node
+     * @param parent the parent of the node
+     * @return the new node
+     */
+    private int newNode(Name name, int parent) {
+        if(size == parents.length) {
+            int capacity = grow(size, size + 1);
+            parents = Arrays.copyOf(parents, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            nodeNames = Arrays.copyOf(nodeNames, capacity);
+            textStarts = Arrays.copyOf(textStarts, capacity);
+            textLengths = Arrays.copyOf(textLengths, capacity);
+            firstAttributes = Arrays.copyOf(firstAttributes, capacity);
+        }
+        int node = size++;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        lastChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        nodeNames[node] = number(name);
+        textStarts[node] = NONE;
+        firstAttributes[node] = NONE;
+        return node;
+    }
+
+    /**
+     * Returns the number of a name in the document, numbering it if it is new
+     * 
+     * @param name the name
+     * @return its number
+     */
+    private int number(Name name) {
+        Integer number = nameNumbers.get(name);
+        if(number == null) {
+            number = names.size();
+            names.add(name);
+            nameNumbers.put(name, number);
+        }
+        return number;
+    }
+
+    /**
+     * Copies a string at the end of the char pool
+     * 
+     * @param s the string to copy
+     * @return the index of its first char in the pool
+     */
+    private int copy(String s) {
+        int length = s.length();
+        if(chars.length - charCount < length) {
+            //The sum overflows to a negative required capacity past Integer.MAX_VALUE chars
+            chars = Arrays.copyOf(chars, grow(chars.length, charCount + length));
+        }
+        s.getChars(0, length, chars, charCount);
+        int start = charCount;
+        charCount += length;
+        return start;
+    }
+
+    /**
+     * Checks the given node exists
+     * 
+     * @param node the node
+     */
+    private void check(int node) {
+        if(node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("there is no node "+node+" in the document.");
+        }
+    }
+
+    /**
+     * Returns the next capacity of an array
+     * 
+     * @throws OutOfMemoryError if the required capacity is larger than MAX_CAPACITY
+     * 
+     * @param capacity the current capacity
+     * @param required the smallest capacity needed, negative if it overflows an int
+     * @return the new capacity, half as large again, or just as large as required, at most MAX_CAPACITY
+     */
+    static int grow(int capacity, int required) {
+        if(required < 0 || required > MAX_CAPACITY) {
+            throw new OutOfMemoryError("a compact document cannot hold more than "+MAX_CAPACITY+" entries in an array.");
+        }
+        long grown = (long) capacity + (capacity >> 1) + 1;
+        return (int) Math.max(required, Math.min(grown, MAX_CAPACITY));
+    }
+
+    /**
+     * Returns the name of an element
+     * 
+     * @throws IllegalArgumentException if the name is null or empty
+     * 
+     * @param elementName the name of the element
+     * @return the name
+     */
+    private static Name elementName(String elementName) {
+        Name name = Name.lookup(elementName);
+        if(name == null) {
+            throw new IllegalArgumentException("element must have a non-empty name.");
+        }
+        return name;
+    }
+}
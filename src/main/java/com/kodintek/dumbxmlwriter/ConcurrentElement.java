@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class ConcurrentElement
+ * 
+ * An element to which several threads can add children and attributes at the same time,
+ * without any global lock : children are appended to a lock-free queue, and attributes are
+ * inserted into a concurrent map, the duplicate check being atomic.
+ * 
+ * Children are written in the order they have been added, which depends on the scheduling of
+ * the threads. For a deterministic output, a Comparator can be given : the children are then
+ * sorted with it each time the element is written.
+ * 
+ * The element can be serialized while children are being added : the written children are then
+ * the ones added before the serialization of the element started. The children themselves are
+ * plain Elements, and each one must only be modified by one thread at a time.
+ * 
+ * @author Alix Ducros
+ */
+public class ConcurrentElement extends Element {
+    /**
+     * The children, in the order they have been added.
+     */
+    private final ConcurrentLinkedQueue<Element> concurrentChildren = new ConcurrentLinkedQueue<>();
+    /**
+     * The values of the attributes, by name.
+     */
+    private final ConcurrentMap<Name, String> attributeValues = new ConcurrentHashMap<>();
+    /**
+     * The names of the attributes, in the order they have been added.
+     */
+    private final ConcurrentLinkedQueue<Name> attributeNames = new ConcurrentLinkedQueue<>();
+    /**
+     * The order the children are written in, or null to write them in the order they have been added.
+     */
+    private final Comparator<? super Element> order ;
+
+    /**
+     * Initializes the element, writing its children in the order they have been added
+     * 
+     * @throws IllegalArgumentException if the name of the element is null or empty
+     * 
+     * @param elementName the name of the element
+     */
+    public ConcurrentElement(String elementName) {
+        this(elementName, null);
+    }
+
+    /**
+     * Initializes the element, writing its children sorted with the given comparator
+     * 
+     * @throws IllegalArgumentException if the name of the element is null or empty
+     * 
+     * @param elementName the name of the element
+     * @param order the order the children are written in, or null to write them in the order they have been added
+     */
+    public ConcurrentElement(String elementName, Comparator<? super Element> order) {
+        super(elementName);
+        this.order = order;
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        Name key = Name.lookup(name);
+        return key == null ? null : attributeValues.get(key);
+    }
+
+    @Override
+    boolean putAttribute(Name name, String value) {
+        if(attributeValues.putIfAbsent(name, value) != null) {
+            return false;
+        }
+        attributeNames.add(name);
+        return true;
+    }
+
+    /**
+     * Stores the text value of the element, whichever way it has been added
+     * 
+     * @param text a String, another CharSequence or a StreamedText
+     * @throws InvalidChildException if the element already has some text value
+     */
+    @Override
+    synchronized void setText(Object text) {
+        super.setText(text);
+    }
+
+    @Override
+    void appendChild(Element child) {
+        concurrentChildren.add(child);
+    }
+
+    @Override
+    void removeChild(Element child) {
+        concurrentChildren.remove(child);
+    }
+
+    @Override
+    void writeAttributes(Appendable out, OutputFormat format) throws IOException {
+        for(Name name : attributeNames) {
+            out.append(' ');
+            Attributes.write(out, name, attributeValues.get(name), format);
+        }
+    }
+
+    @Override
+    long attributesLength(OutputFormat format, boolean utf8) {
+        long length = 0;
+        for(Name name : attributeNames) {
+            length += 1 + Attributes.length(name, attributeValues.get(name), format, utf8);
+        }
+        return length;
+    }
+
+    @Override
+    boolean hasChildren() {
+        return !concurrentChildren.isEmpty();
+    }
+
+    /**
+     * Returns a snapshot of the children, sorted if a comparator has been given
+     * 
+     * @return the children
+     */
+    @Override
+    List<Element> getChildren() {
+        List<Element> snapshot = new ArrayList<>(concurrentChildren);
+        if(order != null) {
+            Collections.sort(snapshot, order);
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Class DeflaterOutput
+ * 
+ * An output compressing the XML while it is written : it is encoded into UTF-8 bytes, which are
+ * deflated each time the buffer is full and written to a channel, in the gzip or the zlib format.
+ * Neither the XML nor its bytes are ever held as a whole, and there is no second pass.
+ * 
+ * The Deflaters and the buffers are pooled : they are given back when the output is closed,
+ * so an output must always be closed. The channel must be a blocking one.
+ * 
+ * Typical use :
+ * 
+ * try (DeflaterOutput out = new DeflaterOutput(fileChannel)) {
+ *     element.writeTo(out);
+ * }
+ * 
+ * @author Alix Ducros
+ */
+public class DeflaterOutput extends Utf8Output {
+
+    /**
+     * The format of the compressed data.
+     */
+    public enum Container {
+        /**
+         * A gzip file (RFC 1952), as written by GZIPOutputStream.
+         */
+        GZIP,
+        /**
+         * The zlib format (RFC 1950), as written by DeflaterOutputStream.
+         */
+        ZLIB
+    }
+
+    /**
+     * What flush() does with the data the Deflater is still holding.
+     */
+    public enum FlushPolicy {
+        /**
+         * Nothing : the data is compressed best, but the reader may not get everything written before flush().
+         */
+        NONE,
+        /**
+         * A sync flush : the reader gets everything written before flush(), at the cost of a few bytes.
+         */
+        SYNC,
+        /**
+         * A full flush : like SYNC, and the reader can also start decompressing from there.
+         */
+        FULL
+    }
+
+    /**
+     * The gzip header : magic number, deflate method, no flags, no time, no extra flags, unknown system.
+     */
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0};
+    
+    /**
+     * The channel the compressed data is written to.
+     */
+    private final WritableByteChannel channel ;
+    /**
+     * The format of the compressed data.
+     */
+    private final Container container ;
+    /**
+     * The compression level.
+     */
+    private final int level ;
+    /**
+     * What flush() does.
+     */
+    private final FlushPolicy policy ;
+    /**
+     * The Deflater, taken from the pool, or null once given back.
+     */
+    private Deflater deflater ;
+    /**
+     * The compressed data, taken from the pool.
+     */
+    private byte[] compressed ;
+    /**
+     * The compressed data, as a buffer to write it to the channel.
+     */
+    private final ByteBuffer compressedBuffer ;
+    /**
+     * Checksum of the uncompressed data, for the gzip trailer.
+     */
+    private final CRC32 crc = new CRC32();
+    /**
+     * True once the header has been written.
+     */
+    private boolean started ;
+    /**
+     * True while closing, so that flush() does not flush the Deflater needlessly.
+     */
+    private boolean closing ;
+
+    /**
+     * Initializes a gzip output, compressed at the default level, flushing only when closed
+     * 
+     * @param channel the channel to write to
+     */
+    public DeflaterOutput(WritableByteChannel channel) {
+        this(channel, Container.GZIP, Deflater.DEFAULT_COMPRESSION, FlushPolicy.NONE);
+    }
+
+    /**
+     * Initializes a gzip output, compressed at the default level, flushing only when closed
+     * 
+     * @param out the stream to write to
+     */
+    public DeflaterOutput(OutputStream out) {
+        this(out == null ? null : Channels.newChannel(out), Container.GZIP, Deflater.DEFAULT_COMPRESSION, FlushPolicy.NONE);
+    }
+
+    /**
+     * Initializes the output
+     * 
+     * @throws IllegalArgumentException if the channel, the container or the policy is null, if the channel is non-blocking, or if the level is not between -1 and 9
+     * 
+     * @param channel the channel to write to
+     * @param container the format of the compressed data
+     * @param level the compression level, from 0 (none) to 9 (best), or -1 (Deflater.DEFAULT_COMPRESSION)
+     * @param policy what flush() does with the data the Deflater is still holding
+     */
+    public DeflaterOutput(WritableByteChannel channel, Container container, int level, FlushPolicy policy) {
+        super(ByteBuffer.wrap(DeflaterPool.takeBuffer()));
+        if(channel == null || container == null || policy == null) {
+            DeflaterPool.releaseBuffer(buffer.array());
+            throw new IllegalArgumentException("channel, container and policy cannot be null.");
+        }
+        if(level < -1 || level > 9) {
+            DeflaterPool.releaseBuffer(buffer.array());
+            throw new IllegalArgumentException("the level must be between -1 and 9.");
+        }
+        try {
+            checkBlocking(channel);
+        } catch (IllegalArgumentException e) {
+            DeflaterPool.releaseBuffer(buffer.array());
+            throw e;
+        }
+        this.channel = channel;
+        this.container = container;
+        this.level = level;
+        this.policy = policy;
+        this.deflater = DeflaterPool.takeDeflater(level, container == Container.GZIP);
+        this.compressed = DeflaterPool.takeBuffer();
+        this.compressedBuffer = ByteBuffer.wrap(compressed);
+    }
+
+    /**
+     * Compresses the whole buffer, writing out the compressed data as it comes
+     * 
+     * @throws IOException if the output is closed or if the channel fails
+     */
+    @Override
+    protected void drain() throws IOException {
+        if(deflater == null) {
+            throw new IOException("the output is closed.");
+        }
+        writeHeader();
+        byte[] input = buffer.array();
+        int length = buffer.position();
+        if(container == Container.GZIP) {
+            crc.update(input, 0, length);
+        }
+        deflater.setInput(input, 0, length);
+        while(!deflater.needsInput()) {
+            write(deflater.deflate(compressed, 0, compressed.length, Deflater.NO_FLUSH));
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Compresses the buffered bytes, then flushes the Deflater according to the policy
+     * 
+     * @throws IOException if the output is closed or if the channel fails
+     */
+    @Override
+    public void flush() throws IOException {
+        super.flush();
+        if(closing || policy == FlushPolicy.NONE) {
+            return;
+        }
+        writeHeader();
+        int mode = policy == FlushPolicy.SYNC ? Deflater.SYNC_FLUSH : Deflater.FULL_FLUSH;
+        int n;
+        do {
+            n = deflater.deflate(compressed, 0, compressed.length, mode);
+            write(n);
+        } while(n == compressed.length);
+    }
+
+    /**
+     * Compresses the buffered bytes, ends the compressed data, gives the Deflater and the buffers back, then closes the channel
+     * 
+     * @throws IOException if the channel fails
+     */
+    @Override
+    @SuppressWarnings("try")
+    public void close() throws IOException {
+        if(deflater == null) {
+            return;
+        }
+        closing = true;
+        //If the channel fails to close after the compressed data has failed, the first failure is thrown
+        //The resource is only declared to be closed last, Java 7 cannot close the field itself
+        try (WritableByteChannel closedLast = channel) {
+            try {
+                super.close();
+                writeHeader();
+                deflater.finish();
+                while(!deflater.finished()) {
+                    write(deflater.deflate(compressed, 0, compressed.length, Deflater.NO_FLUSH));
+                }
+                if(container == Container.GZIP) {
+                    writeTrailer();
+                }
+            } finally {
+                DeflaterPool.releaseDeflater(deflater, level, container == Container.GZIP);
+                deflater = null;
+                DeflaterPool.releaseBuffer(compressed);
+                DeflaterPool.releaseBuffer(buffer.array());
+                //The pooled buffer may be used by another output now : any further write must fail
+                buffer = ByteBuffer.allocate(0);
+            }
+        }
+    }
+
+    /**
+     * Writes the gzip header, before the first compressed bytes
+     * 
+     * @throws IOException if the channel fails
+     */
+    private void writeHeader() throws IOException {
+        if(started) {
+            return;
+        }
+        started = true;
+        if(container == Container.GZIP) {
+            System.arraycopy(GZIP_HEADER, 0, compressed, 0, GZIP_HEADER.length);
+            write(GZIP_HEADER.length);
+        }
+    }
+
+    /**
+     * Writes the gzip trailer : the checksum and the size of the uncompressed data, in little endian
+     * 
+     * @throws IOException if the channel fails
+     */
+    private void writeTrailer() throws IOException {
+        long checksum = crc.getValue();
+        long size = deflater.getBytesRead();
+        for(int i = 0 ; i<4 ; i++) {
+            compressed[i] = (byte) (checksum >> (8 * i));
+            compressed[4 + i] = (byte) (size >> (8 * i));
+        }
+        write(8);
+    }
+
+    /**
+     * Writes the first bytes of the compressed data buffer to the channel
+     * 
+     * @param length the number of bytes to write
+     * @throws IOException if the channel fails
+     */
+    private void write(int length) throws IOException {
+        compressedBuffer.clear();
+        compressedBuffer.limit(length);
+        writeFully(channel, compressedBuffer);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Class DeflaterPool
+ * 
+ * Keeps the Deflaters and byte buffers of the closed DeflaterOutputs, to be used by the next ones :
+ * a Deflater holds native memory and is costly to create, and the buffers are large.
+ * 
+ * @author Alix Ducros
+ */
+final class DeflaterPool {
+    /**
+     * Size of the pooled buffers.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Largest number of Deflaters kept for each level and wrapping, and of buffers.
+     */
+    static final int MAX_POOLED = 16;
+    /**
+     * The idle Deflaters, by wrapping (zlib, then raw) and by level (from -1 to 9).
+     */
+    private static final Pool<Deflater>[][] DEFLATERS = newDeflaterPools();
+    /**
+     * The idle buffers.
+     */
+    private static final Pool<byte[]> BUFFERS = new Pool<>();
+
+    private DeflaterPool() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Pool<Deflater>[][] newDeflaterPools() {
+        Pool<Deflater>[][] pools = (Pool<Deflater>[][]) new Pool<?>[2][11];
+        for(int i = 0 ; i<2 ; i++) {
+            for(int j = 0 ; j<11 ; j++) {
+                pools[i][j] = new Pool<>();
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Returns a Deflater, taken from the pool if there is one
+     * 
+     * @param level the compression level, from -1 (default) to 9
+     * @param nowrap true for raw deflate data, false for the zlib format
+     * @return the Deflater, ready to compress
+     */
+    static Deflater takeDeflater(int level, boolean nowrap) {
+        Deflater deflater = DEFLATERS[nowrap ? 1 : 0][level + 1].take();
+        return deflater == null ? new Deflater(level, nowrap) : deflater;
+    }
+
+    /**
+     * Gives a Deflater back to the pool, or releases its native memory if the pool is full
+     * 
+     * @param deflater the Deflater no longer used
+     * @param level the level it has been created with
+     * @param nowrap the wrapping it has been created with
+     */
+    static void releaseDeflater(Deflater deflater, int level, boolean nowrap) {
+        deflater.reset();
+        if(!DEFLATERS[nowrap ? 1 : 0][level + 1].give(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns a buffer of BUFFER_SIZE bytes, taken from the pool if there is one
+     * 
+     * @return the buffer
+     */
+    static byte[] takeBuffer() {
+        byte[] buffer = BUFFERS.take();
+        return buffer == null ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    /**
+     * Gives a buffer back to the pool
+     * 
+     * @param buffer the buffer no longer used
+     */
+    static void releaseBuffer(byte[] buffer) {
+        BUFFERS.give(buffer);
+    }
+
+    /**
+     * A bounded pool of idle objects, shared between threads.
+     */
+    private static final class Pool<T> {
+        private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        T take() {
+            T t = idle.poll();
+            if(t != null) {
+                size.decrementAndGet();
+            }
+            return t;
+        }
+
+        boolean give(T t) {
+            if(size.incrementAndGet() > MAX_POOLED) {
+                size.decrementAndGet();
+                return false;
+            }
+            idle.offer(t);
+            return true;
+        }
+    }
+}
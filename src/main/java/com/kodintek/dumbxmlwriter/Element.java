@@ -17,11 +17,14 @@
 
 package com.kodintek.dumbxmlwriter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  *
@@ -37,16 +40,20 @@ import java.util.Map.Entry;
  * @author Alix Ducros
  */
 public class Element {
+    /**
+     * Largest rendering kept by enableCache(), in characters.
+     */
+    public static final int DEFAULT_CACHE_LIMIT = 64 * 1024;
     /**
      * The name of the element.
      */
-    private String elementName ;
+    private Name elementName ;
     /**
-     * The list of attributes.
+     * The attributes, in insertion order (null until the first attribute is added).
      */
-    private Map<String, Attribute> attributes ;
+    private Attributes attributes ;
     /**
-     * The list of children.
+     * The list of children (null until the first child is added).
      */
     private List<Element> children ;
     /**
@@ -54,21 +61,13 @@ public class Element {
      */
     private Element parent ;
     /**
-     * The depth of the current element : (0 if it is root element, 1, if child of root, etc).
-     */
-    private int depth ;
-    /**
-     * Text value of the element.
-     */
-    private String text ;
-    /**
-     * Separator to use to indent according to depth.
+     * Text value of the element : a String, another CharSequence, or a StreamedText read when the element is written.
      */
-    private String tabs = "    ";
+    private Object text ;
     /**
-     * Character to use at the end of an XML node
+     * Last rendering of the element (null unless caching has been enabled).
      */
-    private char returns = '\n';
+    private RenderCache cache ;
 
     /**
      * Initializes the element with no parent
@@ -80,12 +79,7 @@ public class Element {
      * @param elementName the name of the element
      */
     public Element(String elementName) {
-        if(elementName == null || elementName.trim().length() == 0) {
-            throw new IllegalArgumentException("element must have a non-empty name.");
-        }
-        this.elementName = elementName.trim();
-        this.attributes = new HashMap<>();
-        this.children = new ArrayList<>();
+        this(checkName(elementName), null);
     }
 
     /**
@@ -97,29 +91,212 @@ public class Element {
      * @param parent the parent of the created element
      */
     public Element(String elementName, Element parent) {
-        if(elementName == null || elementName.trim().length() == 0) {
+        this(checkName(elementName), parent);
+    }
+
+    /**
+     * Initializes the element, from a name already looked up
+     * 
+     * Private, so that 'new Element(null)' keeps resolving to the String constructor : use Element.of instead.
+     * 
+     * @throws IllegalArgumentException if the name of the element is null
+     * 
+     * @param elementName the name of the element
+     * @param parent the parent of the created element, or null
+     */
+    private Element(Name elementName, Element parent) {
+        if(elementName == null) {
             throw new IllegalArgumentException("element must have a non-empty name.");
         }
-        this.elementName = elementName.trim();
-        this.parent = parent;
-        this.attributes = new HashMap<>();
-        this.children = new ArrayList<>();
+        this.elementName = elementName;
         
         if(parent != null) {
-            this.depth = parent.getDepth() + 1 ;
             parent.addChild(this);
         }
     }
 
     /**
-     * Returns the depth of the element
+     * Creates an element with no parent, from a name already looked up
+     * 
+     * @throws IllegalArgumentException if the name of the element is null
+     * 
+     * @param elementName the name of the element
+     * @return the element
+     */
+    public static Element of(Name elementName) {
+        return new Element(elementName, null);
+    }
+
+    /**
+     * Creates an element with a parent, from a name already looked up
+     * 
+     * @throws IllegalArgumentException if the name of the element is null
+     * 
+     * @param elementName the name of the element
+     * @param parent the parent of the created element
+     * @return the element
+     */
+    public static Element of(Name elementName, Element parent) {
+        return new Element(elementName, parent);
+    }
+
+    /**
+     * Returns the shared name matching the name given to a constructor
+     * 
+     * @throws IllegalArgumentException if the name is null or empty
+     * 
+     * @param elementName the name of the element
+     * @return the name
+     */
+    private static Name checkName(String elementName) {
+        Name name = Name.lookup(elementName);
+        if(name == null) {
+            throw new IllegalArgumentException("element must have a non-empty name.");
+        }
+        return name;
+    }
+
+    /**
+     * Empties the element to use it again under another name, keeping its attribute and children storage
+     * 
+     * The former children which are still attached to the element are detached from it.
+     * 
+     * @param elementName the new name of the element
+     */
+    void reset(Name elementName) {
+        this.elementName = elementName;
+        this.parent = null;
+        this.text = null;
+        this.cache = null;
+        if(this.attributes != null) {
+            this.attributes.clear();
+        }
+        if(this.children != null) {
+            for(int i = 0 ; i<this.children.size() ; i++) {
+                Element child = this.children.get(i);
+                if(child.parent == this) {
+                    child.parent = null;
+                }
+            }
+            this.children.clear();
+        }
+    }
+
+    /**
+     * Returns the depth of the element : (0 if it is root element, 1, if child of root, etc)
+     * 
+     * The depth is not stored, so that attaching a subtree never needs to update its descendants :
+     * it is computed by walking up the parents.
      * 
      * @return depth
      */
-    private int getDepth() {
+    int getDepth() {
+        int depth = 0;
+        for(Element e = this.parent ; e != null ; e = e.parent) {
+            depth++;
+        }
         return depth ;
     }
     
+    /**
+     * Returns the name of the element
+     * 
+     * @return elementName
+     */
+    public String getName() {
+        return elementName.toString();
+    }
+
+    /**
+     * Returns the shared name of the element
+     * 
+     * @return elementName
+     */
+    Name getNameToken() {
+        return elementName;
+    }
+
+    /**
+     * Returns the text value of the element
+     * 
+     * A text streamed from a Reader is not read here : it is read only once, when the element is written.
+     * 
+     * @return text, or null if the element has no text value or if its text is streamed
+     */
+    public String getText() {
+        if(text == null || text instanceof StreamedText) {
+            return null;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the value of an attribute of the element
+     * 
+     * @param name the name of the attribute
+     * @return the value, or null if the element has no attribute with this name
+     */
+    public String getAttribute(String name) {
+        if(name == null || this.attributes == null) {
+            return null;
+        }
+        Name key = Name.lookup(name);
+        return key == null ? null : this.attributes.get(key);
+    }
+    
+    /**
+     * Keeps the rendering of the element, to write it again as is while neither the element nor its descendants change
+     * 
+     * Meant for mostly static parts of documents (headers, envelopes...) written over and over.
+     * Any change to the element or to one of its descendants drops the rendering.
+     * Renderings longer than DEFAULT_CACHE_LIMIT characters are not kept, and the elements together keep
+     * at most 16M characters : past that, the oldest renderings are dropped.
+     */
+    public void enableCache() {
+        enableCache(DEFAULT_CACHE_LIMIT);
+    }
+
+    /**
+     * Keeps the rendering of the element, to write it again as is while neither the element nor its descendants change
+     * 
+     * @throws IllegalArgumentException if the limit is negative
+     * 
+     * @param maxLength largest rendering kept, in characters
+     */
+    public void enableCache(int maxLength) {
+        if(maxLength < 0) {
+            throw new IllegalArgumentException("the limit cannot be negative.");
+        }
+        this.cache = new RenderCache(maxLength);
+    }
+
+    /**
+     * Stops keeping the rendering of the element
+     */
+    public void disableCache() {
+        this.cache = null;
+    }
+
+    /**
+     * Returns the cache of the rendering of the element
+     * 
+     * @return cache, or null if caching is not enabled
+     */
+    RenderCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Drops the renderings of the element and of its ancestors, as the element has been modified
+     */
+    private void invalidate() {
+        for(Element e = this ; e != null ; e = e.parent) {
+            if(e.cache != null) {
+                e.cache.clear();
+            }
+        }
+    }
+    
     /**
      * Adds an attribute to the element.
      * 
@@ -129,27 +306,113 @@ public class Element {
      * @param value the value of the attribute
      */
     public void addAttribute(String name, String value) {
-        if(name == null || name.trim().length()==0) {
+        Name key = Name.lookup(name);
+        if(key == null) {
             throw new InvalidAttributeException("the name cannot have null or empty value.");
         }
-        if(attributes.containsKey(name)) {
+        addAttribute(key, value);
+    }
+
+    /**
+     * Adds an attribute to the element, from a name already looked up
+     * 
+     * @throws InvalidAttributeException if the attribute name is null, or if there is already an attribute with the same name
+     * 
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     */
+    public void addAttribute(Name name, String value) {
+        if(name == null) {
+            throw new InvalidAttributeException("the name cannot have null or empty value.");
+        }
+        if(!putAttribute(name, value == null ? "" : value)) {
             throw new InvalidAttributeException("the element already has an attribute with this name : "+name);
         }
-        this.attributes.put(name, new Attribute(name, value));
+        invalidate();
+    }
+
+    /**
+     * Stores an attribute, unless the element already has an attribute with the same name
+     * 
+     * @param name the name of the attribute
+     * @param value the value of the attribute, not null
+     * @return false if the name is already used
+     */
+    boolean putAttribute(Name name, String value) {
+        if(this.attributes == null) {
+            this.attributes = new Attributes();
+        } else if(this.attributes.contains(name)) {
+            return false;
+        }
+        this.attributes.add(name, value);
+        return true;
     }
     
     /**
      * Adds a child element
      * 
+     * If the child already has a parent, it is moved : it is removed from the children of its former parent.
+     * 
      * @param child the child to add to the element
-     * @throws InvalidChildException if the element already contains a text value or if the given child element is null.
+     * @throws InvalidChildException if the given child element is null, or if it is the element itself or one of its ancestors.
      */
     public void addChild(Element child) {
         if(child == null) {
             throw new InvalidChildException("the child cannot have null value.");
         }
-        this.children.add(child);
+        for(Element e = this ; e != null ; e = e.parent) {
+            if(e == child) {
+                throw new InvalidChildException("an element cannot be a child of itself nor of its descendants.");
+            }
+        }
+        if(child.parent != null) {
+            child.parent.removeChild(child);
+            child.parent.invalidate();
+        }
         child.setParent(this);
+        appendChild(child);
+        invalidate();
+    }
+
+    /**
+     * Stores a child after the existing ones
+     * 
+     * @param child the child to store
+     */
+    void appendChild(Element child) {
+        if(this.children == null) {
+            this.children = new ArrayList<>();
+        }
+        this.children.add(child);
+    }
+
+    /**
+     * Removes a child which is moved to another parent
+     * 
+     * @param child the child to remove
+     */
+    void removeChild(Element child) {
+        this.children.remove(child);
+    }
+
+    /**
+     * Removes a child which has been written and has no parent anymore
+     * 
+     * @param child the child to remove
+     */
+    void detach(Element child) {
+        removeChild(child);
+        child.setParent(null);
+        invalidate();
+    }
+
+    /**
+     * Returns the parent of the element
+     * 
+     * @return parent, or null if the element is a root element
+     */
+    Element getParent() {
+        return parent;
     }
     
     /**
@@ -159,10 +422,114 @@ public class Element {
      * @throws InvalidChildException if the element already contains XML child elements or if it already has some text value
      */
     public void addTextChild(String text) {
+        setText(text.trim());
+    }
+
+    /**
+     * Adds a text value to the element, kept as is rather than copied into a String
+     * 
+     * The text is written when the element is written : it must not be modified in between.
+     * 
+     * @param text the text to add to the element
+     * @param trim true to skip the whitespaces at both ends of the text
+     * @throws InvalidChildException if the text is null or if the element already has some text value
+     */
+    public void addTextChild(CharSequence text, boolean trim) {
+        if(text == null) {
+            throw new InvalidChildException("the text cannot have null value.");
+        }
+        if(!trim) {
+            setText(text);
+            return;
+        }
+        int start = 0;
+        int end = text.length();
+        while(start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while(end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        //A view on the trimmed part, so that the characters are not copied
+        setText(start == 0 && end == text.length() ? text : CharBuffer.wrap(text, start, end));
+    }
+
+    /**
+     * Adds a part of an array as the text value of the element, without copying it
+     * 
+     * The chars are written when the element is written : they must not be modified in between.
+     * 
+     * @param chars the chars holding the text
+     * @param offset the index of the first char of the text
+     * @param length the number of chars of the text
+     * @param trim true to skip the whitespaces at both ends of the text
+     * @throws InvalidChildException if the array is null or if the element already has some text value
+     * @throws IndexOutOfBoundsException if the part is not inside the array
+     */
+    public void addTextChild(char[] chars, int offset, int length, boolean trim) {
+        if(chars == null) {
+            throw new InvalidChildException("the text cannot have null value.");
+        }
+        CharBuffer view = CharBuffer.wrap(chars, offset, length);
+        if(trim) {
+            int start = offset;
+            int end = offset + length;
+            while(start < end && chars[start] <= ' ') {
+                start++;
+            }
+            while(end > start && chars[end - 1] <= ' ') {
+                end--;
+            }
+            view = CharBuffer.wrap(chars, start, end - start);
+        }
+        setText(view);
+    }
+
+    /**
+     * Adds a text value read from a Reader only when the element is written, chunk by chunk
+     * 
+     * The reader is read once, then closed : the element can be written only once, unless its rendering is cached.
+     * 
+     * @param reader the source of the text
+     * @param trim true to skip the whitespaces at both ends of the text
+     * @throws InvalidChildException if the reader is null or if the element already has some text value
+     */
+    public void addTextChild(Reader reader, boolean trim) {
+        if(reader == null) {
+            throw new InvalidChildException("the text cannot have null value.");
+        }
+        setText(new StreamedText(reader, trim));
+    }
+
+    /**
+     * Adds a text value decoded from a stream only when the element is written, chunk by chunk
+     * 
+     * The stream is read once, then closed : the element can be written only once, unless its rendering is cached.
+     * 
+     * @param in the source of the text
+     * @param charset the encoding of the stream
+     * @param trim true to skip the whitespaces at both ends of the text
+     * @throws InvalidChildException if the stream is null or if the element already has some text value
+     */
+    public void addTextChild(InputStream in, Charset charset, boolean trim) {
+        if(in == null) {
+            throw new InvalidChildException("the text cannot have null value.");
+        }
+        addTextChild(new InputStreamReader(in, charset), trim);
+    }
+
+    /**
+     * Stores the text value of the element
+     * 
+     * @param text a String, another CharSequence or a StreamedText
+     * @throws InvalidChildException if the element already has some text value
+     */
+    void setText(Object text) {
         if(this.text != null) {
             throw new InvalidChildException("the element has already a text child.");
         }
-        this.text = text.trim() ;
+        this.text = text ;
+        invalidate();
     }
 
     /**
@@ -171,7 +538,6 @@ public class Element {
      */
     private void setParent(Element parent) {
         this.parent = parent ;
-        this.depth = parent.getDepth()+1;
     }
 
     /**
@@ -183,64 +549,311 @@ public class Element {
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        for(int i = 0 ; i<this.depth ; i++) {
-            sb.append(this.tabs);
+        return toString(OutputFormat.PRETTY);
+    }
+    
+    /**
+     * Returns a String formatted accordingly to the XML syntax
+     * 
+     * If compacted is set to true, the returned String will contain neither indentation nor line breaks.
+     * 
+     * @param compacted if true, the return String will be compacted
+     * @return 
+     */
+    public String toString(boolean compacted){
+        return toString(compacted ? OutputFormat.COMPACT : OutputFormat.PRETTY);
+    }
+
+    /**
+     * Returns a String formatted accordingly to the XML syntax, laid out with the given format
+     * 
+     * @param format the layout to use
+     * @return 
+     */
+    public String toString(OutputFormat format) {
+        //A cached rendering gives the length for free : the tree is not measured otherwise, getLength() costs a whole walk
+        String rendering = this.cache == null ? null : this.cache.get(format, getDepth());
+        StringBuilder sb = rendering == null ? new StringBuilder() : new StringBuilder(rendering.length());
+        writeTo(sb, format);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the element and all its descendants, nicely indented, into the given builder
+     * 
+     * The whole tree is written in a single pass, without any intermediate String.
+     * 
+     * @param sb the builder to write into
+     */
+    public void writeTo(StringBuilder sb) {
+        writeTo(sb, OutputFormat.PRETTY);
+    }
+
+    /**
+     * Writes the element and all its descendants into the given builder, laid out with the given format
+     * 
+     * @param sb the builder to write into
+     * @param format the layout to use
+     */
+    public void writeTo(StringBuilder sb, OutputFormat format) {
+        try {
+            writeRoot(sb, format);
+        } catch (IOException e) {
+            //StringBuilder never throws IOException, only a streamed text can
+            throw new IllegalStateException(e);
         }
-        sb.append('<');
-        sb.append(this.elementName);
-        for(Entry<String, Attribute> e :attributes.entrySet()) {
-            sb.append(' ');
-            sb.append(e.getValue().toString());
+    }
+
+    /**
+     * Writes the element and all its descendants, nicely indented, into the given output
+     * 
+     * The whole tree is written in a single pass, without any intermediate String.
+     * 
+     * @param out the output to write into
+     * @throws IOException if the output fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        writeRoot(out, OutputFormat.PRETTY);
+    }
+
+    /**
+     * Writes the element and all its descendants into the given output, laid out with the given format
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @throws IOException if the output fails
+     */
+    public void writeTo(Appendable out, OutputFormat format) throws IOException {
+        writeRoot(out, format);
+    }
+
+    /**
+     * Returns the exact number of characters the element and all its descendants are written into, laid out with the given format
+     * 
+     * The tree is walked once, without writing nor allocating anything : the result can be used to size a buffer beforehand.
+     * The length is not maintained while the tree is built, so each call costs a walk of the whole tree :
+     * toString() does not call it. A text streamed from a Reader cannot be measured before it is read.
+     * 
+     * @param format the layout to use
+     * @return number of characters, or -1 if the element or one of its descendants has a streamed text
+     */
+    public long getLength(OutputFormat format) {
+        return measure(format, getDepth(), false);
+    }
+
+    /**
+     * Returns the exact number of bytes the element and all its descendants are encoded into in UTF-8, laid out with the given format
+     * 
+     * @param format the layout to use
+     * @return number of bytes, or -1 if the element or one of its descendants has a streamed text
+     */
+    public long getUtf8Length(OutputFormat format) {
+        return measure(format, getDepth(), true);
+    }
+
+    /**
+     * Measures the element, then recursively its children, the same way write() writes them
+     * 
+     * @param format the layout to use
+     * @param depth the depth the element is written at
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length, or -1 if the element or one of its descendants has a streamed text
+     */
+    private long measure(OutputFormat format, int depth, boolean utf8) {
+        if(!utf8 && this.cache != null) {
+            String rendering = this.cache.get(format, depth);
+            if(rendering != null) {
+                return rendering.length();
+            }
         }
-        //If there is no text value nor children, the element is made of only one block
-        if(this.text == null && children.isEmpty()) {
-            sb.append("/>");
-            sb.append(this.returns);
-            return sb.toString();
+        if(this.text instanceof StreamedText) {
+            return -1;
         }
-        sb.append('>');
-        sb.append(this.returns);
-        
-        //Add the text value
-        for(int i = 0 ; i<this.depth+1 ; i++) {
-            sb.append(this.tabs);
+        long line = format.indentLength(depth, utf8) + format.newlineLength(utf8);
+        long name = this.elementName.length(utf8);
+        //Start tag
+        long length = line + 1 + name + attributesLength(format, utf8);
+        if(this.text == null && !hasChildren()) {
+            return length + 2;
+        }
+        length++;
+        //Text value
+        if(this.text != null) {
+            length += format.indentLength(depth+1, utf8) + format.textLength((CharSequence) this.text, utf8) + format.newlineLength(utf8);
+        }
+        //Children
+        List<Element> elements = getChildren();
+        if(elements != null) {
+            for(int i = 0 ; i<elements.size() ; i++) {
+                long child = elements.get(i).measure(format, depth+1, utf8);
+                if(child < 0) {
+                    return -1;
+                }
+                length += child;
+            }
+        }
+        //End tag
+        return length + line + 3 + name;
+    }
+
+    /**
+     * Writes the element at its depth in its tree, recording metrics if the format has some
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @throws IOException if the output fails
+     */
+    private void writeRoot(Appendable out, OutputFormat format) throws IOException {
+        SerializationMetrics metrics = format.getMetrics();
+        if(metrics != null) {
+            metrics.write(this, out, format, getDepth());
+        } else {
+            write(out, format, getDepth());
+        }
+    }
+
+    /**
+     * Writes the element, then recursively its children, into the output
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @param depth the depth the element is written at
+     * @throws IOException if the output fails
+     */
+    void write(Appendable out, OutputFormat format, int depth) throws IOException {
+        if(this.cache != null) {
+            if(this.cache.writeTo(out, format, depth)) {
+                return;
+            }
+            //Recorded while written : a rendering over the limit of the cache is streamed rather than held whole
+            RenderCache.Recorder recorder = this.cache.record(out);
+            writeContent(recorder.output(), format, depth);
+            recorder.finish(format, depth);
+            return;
+        }
+        writeContent(out, format, depth);
+    }
+
+    /**
+     * Writes the element, then recursively its children, into the output, without looking at the cache
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @param depth the depth the element is written at
+     * @throws IOException if the output fails
+     */
+    private void writeContent(Appendable out, OutputFormat format, int depth) throws IOException {
+        if(!writeStart(out, format, depth)) {
+            return;
         }
-        sb.append(this.text);
-        sb.append(this.returns);
         //Add the XML children
-        for(Element e : this.children) {
-            sb.append(e.toString());
+        List<Element> elements = getChildren();
+        if(elements != null) {
+            //Indexed rather than iterated : the children lists are array-backed, and no iterator is allocated per element
+            for(int i = 0 ; i<elements.size() ; i++) {
+                elements.get(i).write(out, format, depth+1);
+            }
         }
-        
-        for(int i = 0 ; i<this.depth ; i++) {
-            sb.append(this.tabs);
+        writeEnd(out, format, depth);
+    }
+
+    /**
+     * Writes the start tag of the element, followed by its text value
+     * 
+     * If the element has no text value nor children, it is written as a single self-closed block.
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @param depth the depth the element is written at
+     * @return false if the element has been self-closed, true if its children and end tag are to be written
+     * @throws IOException if the output fails
+     */
+    boolean writeStart(Appendable out, OutputFormat format, int depth) throws IOException {
+        if(out instanceof MeteredOutput) {
+            ((MeteredOutput) out).element(depth);
         }
-        sb.append("</");
-        sb.append(this.elementName);
-        sb.append('>');
-        sb.append(this.returns);
+        format.indent(out, depth);
+        out.append('<');
+        this.elementName.writeTo(out);
+        writeAttributes(out, format);
+        //If there is no text value nor children, the element is made of only one block
+        if(this.text == null && !hasChildren()) {
+            out.append("/>");
+            format.newline(out);
+            return false;
+        }
+        out.append('>');
+        format.newline(out);
         
-        return sb.toString();
+        //Add the text value
+        if(this.text != null) {
+            format.indent(out, depth+1);
+            if(this.text instanceof StreamedText) {
+                ((StreamedText) this.text).writeTo(out, format);
+            } else {
+                format.text(out, (CharSequence) this.text);
+            }
+            format.newline(out);
+        }
+        return true;
     }
-    
+
     /**
-     * Returns a String formatted accordingly to the XML syntax
+     * Writes the end tag of the element
      * 
-     * If compacted is set to true, the returned String will be compacted. The result is not perfect.
+     * @param out the output to write into
+     * @param format the layout to use
+     * @param depth the depth the element is written at
+     * @throws IOException if the output fails
+     */
+    void writeEnd(Appendable out, OutputFormat format, int depth) throws IOException {
+        format.indent(out, depth);
+        out.append("</");
+        this.elementName.writeTo(out);
+        out.append('>');
+        format.newline(out);
+    }
+
+    /**
+     * Writes every attribute of the element, each one preceded by a space
      * 
-     * @param compacted if true, the return String will be compacted
-     * @return 
+     * @param out the output to write into
+     * @param format the layout to use
+     * @throws IOException if the output fails
      */
-    public String toString(boolean compacted){
-        
-        String returnValue = toString() ;
-        if(compacted) {
-            returnValue = returnValue.replaceAll(">[ \n\t]*<", "><");
-            returnValue = returnValue.replaceAll("\n", "");
+    void writeAttributes(Appendable out, OutputFormat format) throws IOException {
+        if(this.attributes != null) {
+            this.attributes.writeTo(out, format);
         }
-        return returnValue ;
     }
-    
-    
+
+    /**
+     * Returns the length of every attribute of the element, each one preceded by a space
+     * 
+     * @param format the layout to use
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    long attributesLength(OutputFormat format, boolean utf8) {
+        return this.attributes == null ? 0 : this.attributes.length(format, utf8);
+    }
+
+    /**
+     * Returns true if the element has at least one child
+     * 
+     * @return true if there are children to write
+     */
+    boolean hasChildren() {
+        return this.children != null && !this.children.isEmpty();
+    }
+
+    /**
+     * Returns the children of the element, in the order they are to be written
+     * 
+     * @return the children, or null if no child has ever been added
+     */
+    List<Element> getChildren() {
+        return children;
+    }
+
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class ElementPool
+ * 
+ * Keeps the elements of short-lived trees to build the next ones with them, together with their
+ * attribute and children storage, so that building and writing a tree over and over allocates nothing once warm.
+ * 
+ * Elements are taken from a scope, and are all given back to the pool when the scope is closed :
+ * 
+ * try(ElementPool.Scope scope = pool.open()) {
+ *     Element response = scope.element("response");
+ *     scope.element("status", response).addTextChild("ok");
+ *     response.writeTo(out);
+ * }
+ * 
+ * The elements of a scope must not be used, nor stay attached to elements out of the scope, once it is closed.
+ * A pool is not thread-safe : each thread is to use its own one.
+ * 
+ * @author Alix Ducros
+ */
+public final class ElementPool {
+    /**
+     * Default largest number of elements kept by a pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = 4096;
+    /**
+     * The elements waiting to be used again.
+     */
+    private final List<Element> idle = new ArrayList<>();
+    /**
+     * Largest number of elements kept.
+     */
+    private final int maxIdle ;
+    /**
+     * The only scope of the pool, opened over and over.
+     */
+    private final Scope scope = new Scope();
+
+    /**
+     * Initializes the pool, keeping at most DEFAULT_MAX_IDLE elements
+     */
+    public ElementPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Initializes the pool
+     * 
+     * @throws IllegalArgumentException if the limit is negative
+     * 
+     * @param maxIdle largest number of elements kept, the others being left to the garbage collector
+     */
+    public ElementPool(int maxIdle) {
+        if(maxIdle < 0) {
+            throw new IllegalArgumentException("the limit cannot be negative.");
+        }
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Opens the scope the elements are taken from
+     * 
+     * @throws IllegalStateException if the scope is already open
+     * 
+     * @return the scope, to close once the tree has been written
+     */
+    public Scope open() {
+        if(scope.open) {
+            throw new IllegalStateException("the scope of the pool is already open.");
+        }
+        scope.open = true;
+        return scope;
+    }
+
+    /**
+     * Returns the number of elements waiting to be used again
+     * 
+     * @return the number of idle elements
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns an element, taken from the pool if there is one
+     * 
+     * @param name the name of the element
+     * @return the element, with no parent, attribute, text nor children
+     */
+    private Element take(Name name) {
+        int last = idle.size() - 1;
+        if(last < 0) {
+            return Element.of(name);
+        }
+        Element element = idle.remove(last);
+        element.reset(name);
+        return element;
+    }
+
+    /**
+     * Gives an element back to the pool
+     * 
+     * @param element the element no longer used
+     */
+    private void give(Element element) {
+        element.reset(element.getNameToken());
+        if(idle.size() < maxIdle) {
+            idle.add(element);
+        }
+    }
+
+    /**
+     * Class Scope
+     * 
+     * The elements taken from the pool for one tree, given back when the scope is closed.
+     * 
+     * @author Alix Ducros
+     */
+    public final class Scope implements AutoCloseable {
+        /**
+         * The elements taken since the scope has been opened.
+         */
+        private final List<Element> taken = new ArrayList<>();
+        /**
+         * True while the scope is open.
+         */
+        private boolean open ;
+
+        private Scope() {
+        }
+
+        /**
+         * Returns an element with no parent
+         * 
+         * @throws IllegalArgumentException if the name of the element is null or empty
+         * @throws IllegalStateException if the scope is closed
+         * 
+         * @param elementName the name of the element
+         * @return the element
+         */
+        public Element element(String elementName) {
+            return element(elementName, null);
+        }
+
+        /**
+         * Returns an element added to the given parent
+         * 
+         * @throws IllegalArgumentException if the name of the element is null or empty
+         * @throws IllegalStateException if the scope is closed
+         * 
+         * @param elementName the name of the element
+         * @param parent the parent of the element, or null
+         * @return the element
+         */
+        public Element element(String elementName, Element parent) {
+            Name name = Name.lookup(elementName);
+            if(name == null) {
+                throw new IllegalArgumentException("element must have a non-empty name.");
+            }
+            return element(name, parent);
+        }
+
+        /**
+         * Returns an element added to the given parent, from a name already looked up
+         * 
+         * @throws IllegalArgumentException if the name of the element is null
+         * @throws IllegalStateException if the scope is closed
+         * 
+         * @param elementName the name of the element
+         * @param parent the parent of the element, or null
+         * @return the element
+         */
+        public Element element(Name elementName, Element parent) {
+            if(!open) {
+                throw new IllegalStateException("the scope is closed.");
+            }
+            if(elementName == null) {
+                throw new IllegalArgumentException("element must have a non-empty name.");
+            }
+            Element element = take(elementName);
+            taken.add(element);
+            if(parent != null) {
+                parent.addChild(element);
+            }
+            return element;
+        }
+
+        /**
+         * Gives every element of the scope back to the pool
+         */
+        @Override
+        public void close() {
+            if(!open) {
+                return;
+            }
+            for(int i = 0 ; i<taken.size() ; i++) {
+                give(taken.get(i));
+            }
+            taken.clear();
+            open = false;
+        }
+    }
+}
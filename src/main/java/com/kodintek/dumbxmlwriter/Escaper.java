@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+
+/**
+ * Class Escaper
+ * 
+ * Escapes the characters having a meaning in XML, while writing a value.
+ * 
+ * The value is scanned once, looking each character up in a table. The runs of characters
+ * which need no escaping are copied in bulk, so a value without any special character is
+ * written as is, without allocating anything.
+ * 
+ * @author Alix Ducros
+ */
+final class Escaper {
+    /**
+     * Replacements of the characters of a text value, indexed by character.
+     */
+    private static final String[] TEXT = new String[128];
+    /**
+     * Replacements of the characters of an attribute value, indexed by character.
+     * Whitespaces other than space are escaped too, as a parser would normalize them to spaces.
+     */
+    private static final String[] ATTRIBUTE = new String[128];
+    
+    static {
+        TEXT['&'] = "&amp;";
+        TEXT['<'] = "&lt;";
+        TEXT['>'] = "&gt;";
+        System.arraycopy(TEXT, 0, ATTRIBUTE, 0, TEXT.length);
+        ATTRIBUTE['"'] = "&quot;";
+        ATTRIBUTE['\t'] = "&#9;";
+        ATTRIBUTE['\n'] = "&#10;";
+        ATTRIBUTE['\r'] = "&#13;";
+    }
+
+    private Escaper() {
+    }
+
+    /**
+     * Writes a text value, escaping its special characters
+     * 
+     * @param out the output to write into
+     * @param value the text to write
+     * @return the number of characters replaced by an entity
+     * @throws IOException if the output fails
+     */
+    static int escapeText(Appendable out, CharSequence value) throws IOException {
+        return escape(out, value, 0, value.length(), TEXT);
+    }
+
+    /**
+     * Writes a part of a text value, escaping its special characters
+     * 
+     * @param out the output to write into
+     * @param value the text to write
+     * @param start the index of the first character to write
+     * @param end the index after the last character to write
+     * @return the number of characters replaced by an entity
+     * @throws IOException if the output fails
+     */
+    static int escapeText(Appendable out, CharSequence value, int start, int end) throws IOException {
+        return escape(out, value, start, end, TEXT);
+    }
+
+    /**
+     * Writes an attribute value, escaping its special characters
+     * 
+     * @param out the output to write into
+     * @param value the value to write
+     * @return the number of characters replaced by an entity
+     * @throws IOException if the output fails
+     */
+    static int escapeAttribute(Appendable out, CharSequence value) throws IOException {
+        return escape(out, value, 0, value.length(), ATTRIBUTE);
+    }
+
+    /**
+     * Writes a part of an attribute value, escaping its special characters
+     * 
+     * @param out the output to write into
+     * @param value the value to write
+     * @param start the index of the first character to write
+     * @param end the index after the last character to write
+     * @return the number of characters replaced by an entity
+     * @throws IOException if the output fails
+     */
+    static int escapeAttribute(Appendable out, CharSequence value, int start, int end) throws IOException {
+        return escape(out, value, start, end, ATTRIBUTE);
+    }
+
+    /**
+     * Returns the length of a text value once escaped
+     * 
+     * @param value the text
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    static long textLength(CharSequence value, boolean utf8) {
+        return length(value, TEXT, utf8);
+    }
+
+    /**
+     * Returns the length of an attribute value once escaped
+     * 
+     * @param value the value
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    static long attributeLength(CharSequence value, boolean utf8) {
+        return length(value, ATTRIBUTE, utf8);
+    }
+
+    /**
+     * Returns the length of a value once the characters found in the table are replaced
+     * 
+     * The replaced characters and their replacements are ASCII : each one is a byte in UTF-8.
+     * 
+     * @param value the value
+     * @param replacements the replacement of each character, null if it is to be kept
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    private static long length(CharSequence value, String[] replacements, boolean utf8) {
+        int end = value.length();
+        long length = utf8 ? Utf8Output.encodedLength(value, 0, end) : end;
+        for(int i = 0 ; i<end ; i++) {
+            char c = value.charAt(i);
+            if(c < 128 && replacements[c] != null) {
+                length += replacements[c].length() - 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes a value, replacing the characters found in the table
+     * 
+     * @param out the output to write into
+     * @param value the value to write
+     * @param start the index of the first character to write
+     * @param end the index after the last character to write
+     * @param replacements the replacement of each character, null if it is to be kept
+     * @return the number of characters replaced
+     * @throws IOException if the output fails
+     */
+    private static int escape(Appendable out, CharSequence value, int start, int end, String[] replacements) throws IOException {
+        int last = start;
+        int replaced = 0;
+        for(int i = start ; i<end ; i++) {
+            char c = value.charAt(i);
+            if(c < 128 && replacements[c] != null) {
+                if(i > last) {
+                    out.append(value, last, i);
+                }
+                out.append(replacements[c]);
+                last = i + 1;
+                replaced++;
+            }
+        }
+        if(last == 0 && end == value.length()) {
+            out.append(value);
+        } else if(last < end) {
+            out.append(value, last, end);
+        }
+        return replaced;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class IncrementalWriter
+ * 
+ * Writes an Element tree while it is still being built, releasing the completed parts.
+ * 
+ * Each time a subtree is marked as complete, it is written to the output along with everything
+ * preceding it in the document, and removed from the tree so that its elements can be collected.
+ * Its ancestors stay open and keep accepting new children. Only the path of open elements and
+ * the children not completed yet are kept in memory.
+ * 
+ * The start tag of an element (with its attributes and text value) is written when one of its
+ * descendants is completed for the first time : its attributes and text value must be set before.
+ * Siblings preceding a completed element are considered complete as well.
+ * 
+ * Typical use :
+ * 
+ * IncrementalWriter writer = new IncrementalWriter(root, out);
+ * for(Record r : records) {
+ *     Element e = new Element("record", root);
+ *     ...
+ *     writer.complete(e);
+ * }
+ * writer.close();
+ * 
+ * @author Alix Ducros
+ */
+public class IncrementalWriter implements Closeable, Flushable {
+    /**
+     * The root of the written tree.
+     */
+    private final Element root ;
+    /**
+     * The output the XML is written into.
+     */
+    private final Appendable out ;
+    /**
+     * The layout to use.
+     */
+    private final OutputFormat format ;
+    /**
+     * The depth the root is written at.
+     */
+    private final int rootDepth ;
+    /**
+     * The elements whose start tag has been written but not their end tag, the root being the first one.
+     */
+    private final List<Element> open = new ArrayList<>();
+    /**
+     * True once the whole tree has been written.
+     */
+    private boolean closed ;
+
+    /**
+     * Initializes the writer, nicely indented
+     * 
+     * @param root the root of the tree to write
+     * @param out the output to write into
+     */
+    public IncrementalWriter(Element root, Appendable out) {
+        this(root, out, OutputFormat.PRETTY);
+    }
+
+    /**
+     * Initializes the writer
+     * 
+     * @throws IllegalArgumentException if the root, the output or the format is null, or if the format has metrics, which are not recorded here
+     * 
+     * @param root the root of the tree to write
+     * @param out the output to write into
+     * @param format the layout to use
+     */
+    public IncrementalWriter(Element root, Appendable out, OutputFormat format) {
+        if(root == null || out == null || format == null) {
+            throw new IllegalArgumentException("root, output and format cannot be null.");
+        }
+        format.checkWithoutMetrics("IncrementalWriter");
+        this.root = root;
+        this.out = out;
+        this.format = format;
+        this.rootDepth = root.getDepth();
+    }
+
+    /**
+     * Writes a completed subtree, and everything preceding it, then removes it from the tree
+     * 
+     * @throws IllegalArgumentException if the element is not a descendant of the root
+     * @throws IllegalStateException if the writer is closed
+     * 
+     * @param element the completed element
+     * @throws IOException if the output fails
+     */
+    public void complete(Element element) throws IOException {
+        if(closed) {
+            throw new IllegalStateException("the document has already been written.");
+        }
+        List<Element> path = pathTo(element);
+        
+        //Close the open elements which are not ancestors of the completed one
+        int common = 0;
+        while(common < open.size() && common < path.size() && open.get(common) == path.get(common)) {
+            common++;
+        }
+        while(open.size() > common) {
+            closeLast();
+        }
+        //Open its ancestors
+        for(int i = common ; i<path.size() ; i++) {
+            Element ancestor = path.get(i);
+            if(i > 0) {
+                writeChildrenBefore(path.get(i - 1), ancestor);
+            }
+            ancestor.writeStart(out, format, rootDepth + i);
+            open.add(ancestor);
+        }
+        //Write it, along with its preceding siblings
+        Element parent = path.get(path.size() - 1);
+        writeChildrenBefore(parent, element);
+        element.write(out, format, rootDepth + path.size());
+        parent.detach(element);
+    }
+
+    /**
+     * Flushes the underlying output, if it can be flushed
+     * 
+     * @throws IOException if the output fails
+     */
+    @Override
+    public void flush() throws IOException {
+        if(out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * Writes the rest of the tree, then closes the underlying output, if it can be closed
+     * 
+     * @throws IOException if the output fails
+     */
+    @Override
+    public void close() throws IOException {
+        if(!closed) {
+            if(open.isEmpty()) {
+                root.write(out, format, rootDepth);
+            }
+            while(!open.isEmpty()) {
+                closeLast();
+            }
+            closed = true;
+        }
+        if(out instanceof Closeable) {
+            ((Closeable) out).close();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Returns the ancestors of an element, from the root down to its parent
+     * 
+     * @param element the element
+     * @return the ancestors
+     */
+    private List<Element> pathTo(Element element) {
+        if(element == null) {
+            throw new IllegalArgumentException("element cannot be null.");
+        }
+        List<Element> path = new ArrayList<>();
+        Element e = element.getParent();
+        while(e != null && e != root) {
+            path.add(e);
+            e = e.getParent();
+        }
+        if(e == null) {
+            throw new IllegalArgumentException("the element is not a descendant of the root, or has already been written.");
+        }
+        path.add(root);
+        //Reverse, so that the root is first
+        for(int i = 0, j = path.size() - 1 ; i<j ; i++, j--) {
+            Element tmp = path.get(i);
+            path.set(i, path.get(j));
+            path.set(j, tmp);
+        }
+        return path;
+    }
+
+    /**
+     * Writes and removes the children of an open element preceding the given one
+     * 
+     * @param parent the open element
+     * @param child the child to stop at
+     * @throws IOException if the output fails
+     */
+    private void writeChildrenBefore(Element parent, Element child) throws IOException {
+        int depth = rootDepth + open.indexOf(parent) + 1;
+        List<Element> children = parent.getChildren();
+        int count = 0;
+        while(children.get(count) != child) {
+            children.get(count).write(out, format, depth);
+            count++;
+        }
+        if(count > 0) {
+            for(Element written : new ArrayList<>(children.subList(0, count))) {
+                parent.detach(written);
+            }
+        }
+    }
+
+    /**
+     * Writes the remaining children and the end tag of the deepest open element, then removes it from the tree
+     * 
+     * @throws IOException if the output fails
+     */
+    private void closeLast() throws IOException {
+        int index = open.size() - 1;
+        Element element = open.remove(index);
+        int depth = rootDepth + index;
+        List<Element> children = element.getChildren();
+        if(children != null) {
+            for(Element child : new ArrayList<>(children)) {
+                child.write(out, format, depth + 1);
+                element.detach(child);
+            }
+        }
+        element.writeEnd(out, format, depth);
+        if(index > 0) {
+            open.get(index - 1).detach(element);
+        }
+    }
+}
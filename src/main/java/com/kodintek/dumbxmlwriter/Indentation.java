@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Class Indentation
+ * 
+ * The indentation prefixes of each depth, as the start of a single string holding the indent unit
+ * repeated as many times as the deepest line written so far : indenting a line is a single append,
+ * and the memory used grows with the depth, not with its square.
+ * 
+ * The string is shared by every element written with the same format, and can be read
+ * from several threads at once.
+ * 
+ * @author Alix Ducros
+ */
+final class Indentation {
+    /**
+     * Number of depths the string is first built for.
+     */
+    private static final int INITIAL_DEPTHS = 16;
+    /**
+     * The indent unit, repeated once per level of depth.
+     */
+    private final String unit ;
+    /**
+     * Number of bytes the unit is encoded into in UTF-8.
+     */
+    private final int unitUtf8Length ;
+    /**
+     * The unit repeated, replaced by a string twice as long when a deeper line is written.
+     */
+    private volatile String repeated ;
+
+    /**
+     * Initializes the indentation
+     * 
+     * @param unit the indent unit, repeated once per level of depth
+     */
+    Indentation(String unit) {
+        this.unit = unit;
+        this.unitUtf8Length = (int) Utf8Output.encodedLength(unit, 0, unit.length());
+        this.repeated = repeat(INITIAL_DEPTHS);
+    }
+
+    /**
+     * Returns the indent unit
+     * 
+     * @return unit
+     */
+    String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Returns the indentation prefix of a depth
+     * 
+     * Writing it with write() does not create it.
+     * 
+     * @param depth the depth of the line
+     * @return the unit repeated depth times
+     */
+    String get(int depth) {
+        return prefix(depth).substring(0, depth * unit.length());
+    }
+
+    /**
+     * Writes the indentation prefix of a depth
+     * 
+     * @param out the output to write into
+     * @param depth the depth of the line
+     * @throws IOException if the output fails
+     */
+    void write(Appendable out, int depth) throws IOException {
+        int length = depth * unit.length();
+        if(length == 0) {
+            return;
+        }
+        String prefix = prefix(depth);
+        if(out instanceof Writer) {
+            //Writer.append would copy the part into a new String
+            ((Writer) out).write(prefix, 0, length);
+        } else {
+            out.append(prefix, 0, length);
+        }
+    }
+
+    /**
+     * Returns the length of the indentation prefix of a depth
+     * 
+     * @param depth the depth of the line
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    long length(int depth, boolean utf8) {
+        return (long) depth * (utf8 ? unitUtf8Length : unit.length());
+    }
+
+    /**
+     * Returns a string starting with the prefix of the given depth
+     * 
+     * @param depth the depth of the line
+     * @return the unit repeated at least depth times
+     */
+    private String prefix(int depth) {
+        String s = repeated;
+        if(depth * unit.length() <= s.length()) {
+            return s;
+        }
+        return grow(depth);
+    }
+
+    /**
+     * Grows the string so that it holds the prefix of the given depth
+     * 
+     * @param depth the depth of the line
+     * @return the unit repeated at least depth times
+     */
+    private synchronized String grow(int depth) {
+        String s = repeated;
+        if(depth * unit.length() > s.length()) {
+            s = repeat(Math.max(depth, 2 * s.length() / unit.length()));
+            repeated = s;
+        }
+        return s;
+    }
+
+    /**
+     * Returns the unit repeated the given number of times
+     * 
+     * @param depths the number of repetitions
+     * @return the repeated unit
+     */
+    private String repeat(int depths) {
+        StringBuilder sb = new StringBuilder(depths * unit.length());
+        for(int i = 0 ; i<depths ; i++) {
+            sb.append(unit);
+        }
+        return sb.toString();
+    }
+}
@@ -28,6 +28,7 @@ package com.kodintek.dumbxmlwriter;
  * @author Alix Ducros
  */
 class InvalidAttributeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
 
     public InvalidAttributeException(String string) {
         super(string);
@@ -26,6 +26,7 @@ package com.kodintek.dumbxmlwriter;
  * @author Alix Ducros
  */
 class InvalidChildException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
 
     public InvalidChildException(String string) {
         super(string);
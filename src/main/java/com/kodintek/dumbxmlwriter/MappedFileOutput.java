@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class MappedFileOutput
+ * 
+ * An output encoding the XML into UTF-8 straight into a file mapped in memory : a window of the file is mapped,
+ * filled, then the next window is mapped after it, growing the file as needed. When the output is closed,
+ * the file is truncated to the exact length of what has been written.
+ * 
+ * There is neither a copy from a buffer into the file, nor a system call per buffer : the pages are written
+ * out by the operating system.
+ * 
+ * Java gives no way to unmap a window : each one stays mapped, even after the output is closed, until
+ * the garbage collector reclaims it. Until then it holds address space, and on some systems (Windows)
+ * the file cannot be deleted or truncated by another process.
+ * 
+ * For the same reason, close() truncates the file while its windows are still mapped. This fails on Windows
+ * (the system refuses to truncate a mapped file) : the file is then closed at the size of its last window,
+ * and close() throws.
+ * 
+ * Typical use :
+ * 
+ * try (MappedFileOutput out = new MappedFileOutput(FileChannel.open(path, CREATE, READ, WRITE))) {
+ *     element.writeTo(out);
+ * }
+ * 
+ * @author Alix Ducros
+ */
+public class MappedFileOutput extends Utf8Output {
+    /**
+     * Size of the windows when none is given.
+     */
+    public static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+    /**
+     * The channel of the file, opened for reading and writing.
+     */
+    private final FileChannel channel ;
+    /**
+     * Size of the windows, in bytes.
+     */
+    private final int window ;
+    /**
+     * Position in the file of the first byte written.
+     */
+    private final long start ;
+    /**
+     * Position in the file of the current window.
+     */
+    private long windowStart ;
+    /**
+     * True once the output has been closed.
+     */
+    private boolean closed ;
+
+    /**
+     * Initializes the output with windows of DEFAULT_WINDOW bytes
+     * 
+     * @param channel the channel of the file, opened for reading and writing : it is written from its current position
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedFileOutput(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Initializes the output
+     * 
+     * @throws IllegalArgumentException if the channel is null or if the window is smaller than 4 bytes
+     * 
+     * @param channel the channel of the file, opened for reading and writing : it is written from its current position
+     * @param window the size of the windows mapped one after the other, in bytes
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedFileOutput(FileChannel channel, int window) throws IOException {
+        super(map(channel, channel == null ? 0 : channel.position(), window));
+        this.channel = channel;
+        this.window = window;
+        this.start = channel.position();
+        this.windowStart = start;
+    }
+
+    /**
+     * Maps a window of the file
+     * 
+     * @throws IllegalArgumentException if the channel is null or if the window is smaller than 4 bytes
+     */
+    private static MappedByteBuffer map(FileChannel channel, long position, int window) throws IOException {
+        if(channel == null) {
+            throw new IllegalArgumentException("channel cannot be null.");
+        }
+        if(window < MAX_BYTES_PER_CHAR) {
+            throw new IllegalArgumentException("the window must hold at least "+MAX_BYTES_PER_CHAR+" bytes.");
+        }
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, window);
+    }
+
+    /**
+     * Maps the next window, starting right after the last byte written
+     * 
+     * @throws IOException if the output is closed or if the file cannot be mapped
+     */
+    @Override
+    protected void drain() throws IOException {
+        if(closed) {
+            throw new IOException("the output is closed.");
+        }
+        windowStart += buffer.position();
+        buffer = map(channel, windowStart, window);
+    }
+
+    @Override
+    public long getWrittenBytes() {
+        return windowStart - start + buffer.position();
+    }
+
+    /**
+     * Does nothing : the bytes are already in the file, and are written out by the operating system
+     * 
+     * Use force() to wait for them to reach the storage device.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes the bytes of the current window out to the storage device, waiting for them to get there
+     * 
+     * @throws IOException if the output is closed
+     */
+    public void force() throws IOException {
+        if(closed) {
+            throw new IOException("the output is closed.");
+        }
+        ((MappedByteBuffer) buffer).force();
+    }
+
+    /**
+     * Writes the current window out, truncates the file to the end of what has been written, then closes the channel
+     * 
+     * The windows are not unmapped by this : they are only once garbage collected. On Windows, the truncation
+     * of a mapped file fails.
+     * 
+     * @throws IOException if the window cannot be written out or the file cannot be truncated
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        //If the channel fails to close after the window has failed to be written out, the first failure is thrown
+        try (FileChannel file = channel) {
+            try {
+                super.close();
+                //The pages of the window must reach the file before its end is cut off under the mapping
+                ((MappedByteBuffer) buffer).force();
+                file.truncate(windowStart + buffer.position());
+            } finally {
+                closed = true;
+                windowStart += buffer.position();
+                //The mapping is no longer written to : any further write must fail rather than go past the end of the file
+                buffer = ByteBuffer.allocate(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+
+/**
+ * Class MeteredOutput
+ * 
+ * An output counting what is written through it while a single document is serialized,
+ * before the counts are added to the SerializationMetrics at once.
+ * 
+ * The writing code looks for this class to count elements, attributes and escapes :
+ * when metrics are disabled, the output is never wrapped and nothing is counted.
+ * 
+ * @author Alix Ducros
+ */
+final class MeteredOutput implements Appendable {
+    /**
+     * The output actually written into.
+     */
+    private final Appendable out ;
+    /**
+     * The output as a StringBuilder, to watch its capacity, or null.
+     */
+    private final StringBuilder builder ;
+    /**
+     * The output as a Utf8Output, to count its bytes, or null.
+     */
+    private final Utf8Output utf8 ;
+    /**
+     * Capacity of the StringBuilder after the last append.
+     */
+    private int capacity ;
+    /**
+     * Bytes written into the Utf8Output before the document.
+     */
+    private final long startBytes ;
+    /**
+     * Number of characters written.
+     */
+    long characters ;
+    /**
+     * Number of elements written.
+     */
+    long elements ;
+    /**
+     * Number of attributes written.
+     */
+    long attributes ;
+    /**
+     * Number of characters replaced by an entity.
+     */
+    long escapes ;
+    /**
+     * Number of growths of the StringBuilder.
+     */
+    long growths ;
+    /**
+     * Largest depth an element has been written at.
+     */
+    int maxDepth ;
+
+    /**
+     * Initializes the output
+     * 
+     * @param out the output actually written into
+     */
+    MeteredOutput(Appendable out) {
+        this.out = out;
+        this.builder = out instanceof StringBuilder ? (StringBuilder) out : null;
+        this.capacity = builder == null ? 0 : builder.capacity();
+        this.utf8 = out instanceof Utf8Output ? (Utf8Output) out : null;
+        this.startBytes = utf8 == null ? 0 : utf8.getWrittenBytes();
+    }
+
+    /**
+     * Counts an element written at the given depth
+     * 
+     * @param depth the depth of the element
+     */
+    void element(int depth) {
+        elements++;
+        if(depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    /**
+     * Adds elements, attributes and escapes written into this output, but counted elsewhere
+     * 
+     * @param elements the number of elements
+     * @param attributes the number of attributes
+     * @param escapes the number of characters replaced by an entity
+     * @param depth the largest depth of the elements
+     */
+    void add(long elements, long attributes, long escapes, int depth) {
+        this.elements += elements;
+        this.attributes += attributes;
+        this.escapes += escapes;
+        if(depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written into the output, if it is a Utf8Output
+     * 
+     * @return number of bytes, or 0
+     */
+    long bytes() {
+        return utf8 == null ? 0 : utf8.getWrittenBytes() - startBytes;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        out.append(csq);
+        characters += csq == null ? 4 : csq.length();
+        grown();
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        out.append(csq, start, end);
+        characters += end - start;
+        grown();
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        out.append(c);
+        characters++;
+        grown();
+        return this;
+    }
+
+    /**
+     * Counts the growths of the StringBuilder written into
+     */
+    private void grown() {
+        if(builder != null && builder.capacity() != capacity) {
+            capacity = builder.capacity();
+            growths++;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Class Name
+ * 
+ * The name of an element or an attribute, validated and trimmed once, and kept UTF-8 encoded
+ * for the outputs writing bytes.
+ * 
+ * Names are shared through a symbol table : Name.of returns the same instance each time it is
+ * given the same name, so a million 'item' elements share a single name. Only trimmed names are
+ * keys of the table, so a name already trimmed is neither trimmed nor validated again.
+ * 
+ * To keep memory bounded while keeping the names in use, the table has two generations : once the
+ * young one holds MAX_SYMBOLS names, it becomes the old one and the former old one is dropped.
+ * A name found in the old generation is moved back to the young one, so only the names no longer
+ * used are forgotten. A forgotten name is created again when needed, equal to the former one.
+ * 
+ * @author Alix Ducros
+ */
+public final class Name {
+    /**
+     * Largest number of names of each generation of the symbol table.
+     */
+    static final int MAX_SYMBOLS = 64 * 1024;
+    /**
+     * The names looked up since the last rotation, by trimmed name.
+     */
+    private static volatile ConcurrentMap<String, Name> young = new ConcurrentHashMap<>();
+    /**
+     * The names looked up before the last rotation, by trimmed name.
+     */
+    private static volatile ConcurrentMap<String, Name> old = new ConcurrentHashMap<>();
+    /**
+     * The trimmed name.
+     */
+    private final String value ;
+    /**
+     * The trimmed name, UTF-8 encoded the first time it is written to a Utf8Output.
+     */
+    private volatile byte[] encoded ;
+
+    /**
+     * Initializes the name
+     * 
+     * @param value the trimmed name
+     */
+    private Name(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the name matching the given string
+     * 
+     * @throws IllegalArgumentException if the name is null or empty
+     * 
+     * @param name the name, which is trimmed
+     * @return the shared name
+     */
+    public static Name of(String name) {
+        Name n = lookup(name);
+        if(n == null) {
+            throw new IllegalArgumentException("a name cannot be null nor empty.");
+        }
+        return n;
+    }
+
+    /**
+     * Returns the name matching the given string
+     * 
+     * @param name the name, which is trimmed
+     * @return the shared name, or null if the name is null or empty
+     */
+    static Name lookup(String name) {
+        if(name == null) {
+            return null;
+        }
+        Name n = young.get(name);
+        if(n != null) {
+            return n;
+        }
+        String trimmed = name.trim();
+        if(trimmed.length() == 0) {
+            return null;
+        }
+        if(trimmed != name) {
+            n = young.get(trimmed);
+            if(n != null) {
+                return n;
+            }
+        }
+        n = old.get(trimmed);
+        if(n == null) {
+            n = new Name(trimmed);
+        }
+        ConcurrentMap<String, Name> symbols = young;
+        if(symbols.size() >= MAX_SYMBOLS) {
+            symbols = rotate(symbols);
+        }
+        Name existing = symbols.putIfAbsent(trimmed, n);
+        return existing == null ? n : existing;
+    }
+
+    /**
+     * Returns the number of names held by the symbol table
+     * 
+     * @return number of names, in both generations
+     */
+    static int symbols() {
+        return young.size() + old.size();
+    }
+
+    /**
+     * Makes a full young generation the old one, and starts a new young one
+     * 
+     * @param full the young generation found full
+     * @return the young generation to use
+     */
+    private static synchronized ConcurrentMap<String, Name> rotate(ConcurrentMap<String, Name> full) {
+        if(young == full) {
+            old = full;
+            young = new ConcurrentHashMap<>();
+        }
+        return young;
+    }
+
+    /**
+     * Writes the name, as bytes if the output is a Utf8Output
+     * 
+     * @param out the output to write into
+     * @throws IOException if the output fails
+     */
+    void writeTo(Appendable out) throws IOException {
+        if(out instanceof Utf8Output) {
+            ((Utf8Output) out).writeEncoded(encoded());
+        } else {
+            out.append(value);
+        }
+    }
+
+    /**
+     * Returns the length of the name
+     * 
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    int length(boolean utf8) {
+        return utf8 ? encoded().length : value.length();
+    }
+
+    /**
+     * Returns the name UTF-8 encoded, encoding it the first time
+     * 
+     * @return encoded
+     */
+    private byte[] encoded() {
+        byte[] e = encoded;
+        if(e == null) {
+            e = value.getBytes(StandardCharsets.UTF_8);
+            encoded = e;
+        }
+        return e;
+    }
+
+    /**
+     * Returns the trimmed name
+     * 
+     * @return value
+     */
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof Name && ((Name) o).value.equals(value));
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+
+/**
+ * Class OutputFormat
+ * 
+ * Describes how an XML tree is laid out when it is serialized
+ * - PRETTY : one node per line, indented according to its depth
+ * - COMPACT : no indentation nor line breaks at all
+ * - any other indent unit and line separator given to the constructor
+ * 
+ * Attribute values and text values are escaped, unless the format is obtained through
+ * withoutEscaping(), for values which are already escaped.
+ * 
+ * A format obtained through withMetrics() also records statistics of the elements written with it.
+ * 
+ * @author Alix Ducros
+ */
+public final class OutputFormat {
+    /**
+     * One node per line, indented with four spaces per level.
+     */
+    public static final OutputFormat PRETTY = new OutputFormat("    ", "\n");
+    /**
+     * Everything on a single line, without any whitespace between nodes.
+     */
+    public static final OutputFormat COMPACT = new OutputFormat("", "");
+
+    /**
+     * Prefixes to use to indent according to depth.
+     */
+    private final Indentation indentation ;
+    /**
+     * Characters to use at the end of an XML node.
+     */
+    private final String newline ;
+    /**
+     * True if the special characters of the values are to be escaped.
+     */
+    private final boolean escaping ;
+    /**
+     * The statistics recorded while writing with this format, or null.
+     */
+    private final SerializationMetrics metrics ;
+    /**
+     * The same format without escaping, once it has been asked for.
+     */
+    private OutputFormat unescaped ;
+    /**
+     * The same format with the last metrics asked for.
+     */
+    private OutputFormat metered ;
+
+    /**
+     * Initializes the format
+     * 
+     * @throws IllegalArgumentException if the indent or the newline is null
+     * 
+     * @param indent the indent unit, repeated once per level of depth
+     * @param newline the characters written at the end of each node
+     */
+    public OutputFormat(String indent, String newline) {
+        if(indent == null || newline == null) {
+            throw new IllegalArgumentException("indent and newline cannot be null, but can be empty.");
+        }
+        this.indentation = new Indentation(indent);
+        this.newline = newline;
+        this.escaping = true;
+        this.metrics = null;
+    }
+
+    /**
+     * Initializes a copy of a format
+     * 
+     * @param indentation the prefixes to use to indent according to depth
+     * @param newline the characters written at the end of each node
+     * @param escaping true if the special characters of the values are to be escaped
+     * @param metrics the statistics to record, or null
+     */
+    private OutputFormat(Indentation indentation, String newline, boolean escaping, SerializationMetrics metrics) {
+        this.indentation = indentation;
+        this.newline = newline;
+        this.escaping = escaping;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the same format, writing attribute and text values as they are
+     * 
+     * To be used when the values are already escaped : otherwise, any '&amp;', '&lt;' or '"' in them produces broken XML.
+     * 
+     * @return the format without escaping
+     */
+    public OutputFormat withoutEscaping() {
+        if(!escaping) {
+            return this;
+        }
+        //Always the same instance, so that renderings cached with it can be reused
+        OutputFormat format = unescaped;
+        if(format == null) {
+            format = new OutputFormat(indentation, newline, false, metrics);
+            unescaped = format;
+        }
+        return format;
+    }
+
+    /**
+     * Returns the same format, recording statistics of the elements written with it
+     * 
+     * @throws IllegalArgumentException if the metrics are null
+     * 
+     * @param metrics the statistics to record
+     * @return the format with metrics
+     */
+    public OutputFormat withMetrics(SerializationMetrics metrics) {
+        if(metrics == null) {
+            throw new IllegalArgumentException("metrics cannot be null.");
+        }
+        if(metrics == this.metrics) {
+            return this;
+        }
+        //The same instance for the same metrics, so that renderings cached with it can be reused
+        OutputFormat format = metered;
+        if(format == null || format.metrics != metrics) {
+            format = new OutputFormat(indentation, newline, escaping, metrics);
+            metered = format;
+        }
+        return format;
+    }
+
+    /**
+     * Returns the statistics recorded while writing with this format
+     * 
+     * @return metrics, or null if the format has no metrics
+     */
+    public SerializationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the indent unit, repeated once per level of depth
+     * 
+     * @return indent
+     */
+    public String getIndent() {
+        return indentation.getUnit();
+    }
+
+    /**
+     * Returns the characters written at the end of each node
+     * 
+     * @return newline
+     */
+    public String getNewline() {
+        return newline;
+    }
+
+    /**
+     * Returns true if the special characters of the values are escaped
+     * 
+     * @return escaping
+     */
+    public boolean isEscaping() {
+        return escaping;
+    }
+
+    /**
+     * Rejects the format if it carries metrics, for the writers which do not record them
+     * 
+     * @throws IllegalArgumentException if the format has metrics
+     * 
+     * @param writer the name of the writer, for the message
+     */
+    void checkWithoutMetrics(String writer) {
+        if(metrics != null) {
+            throw new IllegalArgumentException(writer+" does not record metrics : use a format without them.");
+        }
+    }
+
+    /**
+     * Writes the indentation matching the given depth
+     * 
+     * @param out the output to write into
+     * @param depth the depth to indent to
+     * @throws IOException if the output fails
+     */
+    void indent(Appendable out, int depth) throws IOException {
+        indentation.write(out, depth);
+    }
+
+    /**
+     * Writes the end of a node
+     * 
+     * @param out the output to write into
+     * @throws IOException if the output fails
+     */
+    void newline(Appendable out) throws IOException {
+        out.append(this.newline);
+    }
+
+    /**
+     * Writes a text value, escaped if required
+     * 
+     * While a template is compiled, a value which is a hole is handed to the template instead.
+     * 
+     * @param out the output to write into
+     * @param text the text to write
+     * @throws IOException if the output fails
+     */
+    void text(Appendable out, CharSequence text) throws IOException {
+        if(out instanceof Template.Compiler && ((Template.Compiler) out).hole(text, false)) {
+            return;
+        }
+        if(escaping) {
+            countEscapes(out, Escaper.escapeText(out, text));
+        } else {
+            out.append(text);
+        }
+    }
+
+    /**
+     * Writes an attribute value, escaped if required
+     * 
+     * While a template is compiled, a value which is a hole is handed to the template instead.
+     * 
+     * @param out the output to write into
+     * @param value the value to write
+     * @throws IOException if the output fails
+     */
+    void attributeValue(Appendable out, CharSequence value) throws IOException {
+        if(out instanceof Template.Compiler && ((Template.Compiler) out).hole(value, true)) {
+            return;
+        }
+        if(escaping) {
+            countEscapes(out, Escaper.escapeAttribute(out, value));
+        } else {
+            out.append(value);
+        }
+    }
+
+    /**
+     * Writes a part of a text value, escaped if required
+     * 
+     * @param out the output to write into
+     * @param text the text to write
+     * @param start the index of the first character to write
+     * @param end the index after the last character to write
+     * @throws IOException if the output fails
+     */
+    void text(Appendable out, CharSequence text, int start, int end) throws IOException {
+        if(escaping) {
+            countEscapes(out, Escaper.escapeText(out, text, start, end));
+        } else {
+            out.append(text, start, end);
+        }
+    }
+
+    /**
+     * Writes a part of an attribute value, escaped if required
+     * 
+     * @param out the output to write into
+     * @param value the value to write
+     * @param start the index of the first character to write
+     * @param end the index after the last character to write
+     * @throws IOException if the output fails
+     */
+    void attributeValue(Appendable out, CharSequence value, int start, int end) throws IOException {
+        if(escaping) {
+            countEscapes(out, Escaper.escapeAttribute(out, value, start, end));
+        } else {
+            out.append(value, start, end);
+        }
+    }
+
+    /**
+     * Returns the length of the indentation matching the given depth
+     * 
+     * @param depth the depth to indent to
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    long indentLength(int depth, boolean utf8) {
+        return indentation.length(depth, utf8);
+    }
+
+    /**
+     * Returns the length of the end of a node
+     * 
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    long newlineLength(boolean utf8) {
+        return utf8 ? Utf8Output.encodedLength(newline, 0, newline.length()) : newline.length();
+    }
+
+    /**
+     * Returns the length of a text value, escaped if required
+     * 
+     * @param text the text
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    long textLength(CharSequence text, boolean utf8) {
+        if(escaping) {
+            return Escaper.textLength(text, utf8);
+        }
+        return utf8 ? Utf8Output.encodedLength(text, 0, text.length()) : text.length();
+    }
+
+    /**
+     * Returns the length of an attribute value, escaped if required
+     * 
+     * @param value the value
+     * @param utf8 true for the number of UTF-8 bytes, false for the number of characters
+     * @return length
+     */
+    long attributeValueLength(CharSequence value, boolean utf8) {
+        if(escaping) {
+            return Escaper.attributeLength(value, utf8);
+        }
+        return utf8 ? Utf8Output.encodedLength(value, 0, value.length()) : value.length();
+    }
+
+    /**
+     * Counts the escaped characters, if the output is metered
+     * 
+     * @param out the output written into
+     * @param escapes the number of characters replaced by an entity
+     */
+    private static void countEscapes(Appendable out, int escapes) {
+        if(escapes != 0 && out instanceof MeteredOutput) {
+            ((MeteredOutput) out).escapes += escapes;
+        }
+    }
+}
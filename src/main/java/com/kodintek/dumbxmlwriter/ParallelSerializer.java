@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class ParallelSerializer
+ * 
+ * Serializes large Element trees on several threads of a ForkJoinPool.
+ * 
+ * The children of an element are split into ranges rendered in independent buffers, which are
+ * then written in document order : the result is exactly the one of Element.toString().
+ * Elements having at most 'threshold' children are rendered sequentially, as splitting them
+ * would cost more than it saves.
+ * 
+ * The tree must not be modified while it is being serialized.
+ * 
+ * A serializer does not own the pool it is given : the caller shuts it down when it is no longer needed.
+ * 
+ * @author Alix Ducros
+ */
+public class ParallelSerializer {
+    /**
+     * Number of children below which an element is rendered sequentially, when none is given.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+    /**
+     * The pool the rendering is run in.
+     */
+    private final ForkJoinPool pool ;
+    /**
+     * Number of children below which an element is rendered sequentially.
+     */
+    private final int threshold ;
+
+    /**
+     * Initializes the serializer with a pool shared by every serializer built this way, using all the available processors
+     */
+    public ParallelSerializer() {
+        this(SharedPool.POOL, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Initializes the serializer
+     * 
+     * @throws IllegalArgumentException if the pool is null or the threshold is lower than 1
+     * 
+     * @param pool the pool the rendering is run in
+     * @param threshold number of children below which an element is rendered sequentially
+     */
+    public ParallelSerializer(ForkJoinPool pool, int threshold) {
+        if(pool == null || threshold < 1) {
+            throw new IllegalArgumentException("pool cannot be null and threshold must be at least 1.");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns a String formatted accordingly to the XML syntax, laid out with the given format
+     * 
+     * @throws IllegalStateException if a text streamed from a Reader fails, with its IOException as cause
+     * 
+     * @param element the element to serialize
+     * @param format the layout to use
+     * @return 
+     */
+    public String toString(Element element, OutputFormat format) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeTo(element, sb, format);
+        } catch (IOException e) {
+            //StringBuilder never throws IOException, only a streamed text can
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the element and all its descendants into the given output, laid out with the given format
+     * 
+     * The output is only written to from the calling thread, once every part has been rendered.
+     * 
+     * @throws IllegalArgumentException if the format has metrics, which are not recorded here
+     * @throws IllegalStateException if a text streamed from a Reader fails while rendered by the pool
+     * 
+     * @param element the element to serialize
+     * @param out the output to write into
+     * @param format the layout to use
+     * @throws IOException if the output fails
+     */
+    public void writeTo(Element element, Appendable out, OutputFormat format) throws IOException {
+        format.checkWithoutMetrics("ParallelSerializer");
+        List<CharSequence> chunks = pool.invoke(new ElementTask(element, format, element.getDepth()));
+        for(CharSequence chunk : chunks) {
+            out.append(chunk);
+        }
+    }
+
+    /**
+     * Appends the rendering of an element to the chunks, splitting its children if there are more than the threshold
+     * 
+     * @param element the element to render
+     * @param format the layout to use
+     * @param depth the depth the element is written at
+     * @param chunks the rendered chunks, the last one being the builder to append to
+     * @throws IOException if a streamed text fails, everything being written into builders
+     */
+    private void render(Element element, OutputFormat format, int depth, List<CharSequence> chunks) throws IOException {
+        List<Element> children = element.getChildren();
+        StringBuilder sb = (StringBuilder) chunks.get(chunks.size() - 1);
+        if(children == null || children.size() <= threshold) {
+            element.write(sb, format, depth);
+            return;
+        }
+        element.writeStart(sb, format, depth);
+        chunks.addAll(new RangeTask(children, 0, children.size(), format, depth + 1).invoke());
+        sb = new StringBuilder();
+        element.writeEnd(sb, format, depth);
+        chunks.add(sb);
+    }
+
+    /**
+     * Holds the pool of the serializers built without one, created on first use and never shut down :
+     * its idle threads do not keep the JVM alive.
+     */
+    private static class SharedPool {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    /**
+     * Renders a whole element.
+     */
+    private class ElementTask extends RecursiveTask<List<CharSequence>> {
+        private static final long serialVersionUID = 1L;
+        private final Element element ;
+        private final OutputFormat format ;
+        private final int depth ;
+
+        ElementTask(Element element, OutputFormat format, int depth) {
+            this.element = element;
+            this.format = format;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<CharSequence> compute() {
+            List<CharSequence> chunks = new ArrayList<>();
+            chunks.add(new StringBuilder());
+            try {
+                render(element, format, depth, chunks);
+            } catch (IOException e) {
+                //StringBuilder never throws IOException, only a streamed text can : it reaches the caller wrapped
+                throw new IllegalStateException(e);
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * Renders a range of sibling elements, splitting it in halves while it is larger than the threshold.
+     */
+    private class RangeTask extends RecursiveTask<List<CharSequence>> {
+        private static final long serialVersionUID = 1L;
+        private final List<Element> siblings ;
+        private final int from ;
+        private final int to ;
+        private final OutputFormat format ;
+        private final int depth ;
+
+        RangeTask(List<Element> siblings, int from, int to, OutputFormat format, int depth) {
+            this.siblings = siblings;
+            this.from = from;
+            this.to = to;
+            this.format = format;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<CharSequence> compute() {
+            if(to - from > threshold) {
+                int middle = (from + to) >>> 1;
+                RangeTask second = new RangeTask(siblings, middle, to, format, depth);
+                second.fork();
+                List<CharSequence> chunks = new RangeTask(siblings, from, middle, format, depth).compute();
+                chunks.addAll(second.join());
+                return chunks;
+            }
+            List<CharSequence> chunks = new ArrayList<>();
+            chunks.add(new StringBuilder());
+            try {
+                for(int i = from ; i<to ; i++) {
+                    render(siblings.get(i), format, depth, chunks);
+                }
+            } catch (IOException e) {
+                //StringBuilder never throws IOException, only a streamed text can : it reaches the caller wrapped
+                throw new IllegalStateException(e);
+            }
+            return chunks;
+        }
+    }
+}
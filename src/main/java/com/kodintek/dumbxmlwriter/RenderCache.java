@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class RenderCache
+ * 
+ * The last rendering of an element, kept to be written again as long as the element and its
+ * descendants are not modified.
+ * 
+ * A rendering depends on the format and on the depth it has been written at (for indentation),
+ * so it is only reused for the same ones. Renderings longer than the limit are not kept, and all the
+ * caches together keep at most MAX_TOTAL_LENGTH characters : the oldest renderings are dropped first.
+ * 
+ * With metrics, the elements, attributes and escapes of a rendering are kept along with it,
+ * and counted again each time it is written.
+ * 
+ * @author Alix Ducros
+ */
+final class RenderCache {
+    /**
+     * Largest number of characters kept by all the caches together.
+     */
+    static final long MAX_TOTAL_LENGTH = 16L * 1024 * 1024;
+    /**
+     * The renderings kept by all the caches, oldest first, including the ones replaced since.
+     */
+    private static final ConcurrentLinkedQueue<Entry> KEPT = new ConcurrentLinkedQueue<>();
+    /**
+     * Number of characters of the renderings in KEPT.
+     */
+    private static final AtomicLong TOTAL_LENGTH = new AtomicLong();
+    
+    /**
+     * Largest rendering kept, in characters.
+     */
+    private final int maxLength ;
+    /**
+     * The rendering with its format and depth, or null if there is none.
+     * Replaced as a whole, so that a thread never sees the rendering of one format with the depth of another.
+     */
+    private volatile Entry entry ;
+    /**
+     * Incremented each time the element is modified : a rendering started before is not kept.
+     */
+    private volatile int generation ;
+
+    /**
+     * Initializes an empty cache
+     * 
+     * @param maxLength largest rendering kept, in characters
+     */
+    RenderCache(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the number of characters kept by all the caches together
+     * 
+     * @return number of characters
+     */
+    static long totalLength() {
+        return TOTAL_LENGTH.get();
+    }
+
+    /**
+     * Returns the rendering, if it has been written with the given format and depth
+     * 
+     * @param format the format of the rendering
+     * @param depth the depth of the rendering
+     * @return rendering, or null if there is none for this format and depth
+     */
+    String get(OutputFormat format, int depth) {
+        Entry e = this.entry;
+        if(e != null && e.format == format && e.depth == depth) {
+            return e.rendering;
+        }
+        return null;
+    }
+
+    /**
+     * Writes the rendering, if it has been written with the given format and depth, counting it again if the output is metered
+     * 
+     * @param out the output to write into
+     * @param format the format of the rendering
+     * @param depth the depth of the rendering
+     * @return false if there is no rendering to write
+     * @throws IOException if the output fails
+     */
+    boolean writeTo(Appendable out, OutputFormat format, int depth) throws IOException {
+        Entry e = this.entry;
+        if(e == null || e.format != format || e.depth != depth) {
+            return false;
+        }
+        if(out instanceof MeteredOutput) {
+            if(!e.metered) {
+                //Recorded without metrics : written again to be counted
+                return false;
+            }
+            out.append(e.rendering);
+            ((MeteredOutput) out).add(e.elements, e.attributes, e.escapes, e.maxDepth);
+            return true;
+        }
+        out.append(e.rendering);
+        return true;
+    }
+
+    /**
+     * Keeps a rendering, unless it is longer than the limit or the element has been modified since it was started
+     * 
+     * @param format the format of the rendering
+     * @param depth the depth of the rendering
+     * @param rendering the rendering
+     * @param started the generation of the cache when the rendering was started
+     * @param counts what the rendering is made of, or null if it has been written without metrics
+     * @return the rendering as a String, whether it has been kept or not
+     */
+    private String put(OutputFormat format, int depth, CharSequence rendering, int started, MeteredOutput counts) {
+        String s = rendering.toString();
+        if(s.length() > maxLength) {
+            clear();
+            return s;
+        }
+        Entry e = new Entry(this, format, depth, s, counts);
+        synchronized(this) {
+            if(generation != started) {
+                //The element has been modified while being written : the rendering may already be stale
+                return s;
+            }
+            this.entry = e;
+        }
+        KEPT.add(e);
+        TOTAL_LENGTH.addAndGet(s.length());
+        while(TOTAL_LENGTH.get() > MAX_TOTAL_LENGTH) {
+            Entry oldest = KEPT.poll();
+            if(oldest == null) {
+                break;
+            }
+            TOTAL_LENGTH.addAndGet(-oldest.rendering.length());
+            oldest.owner.evict(oldest);
+        }
+        return s;
+    }
+
+    /**
+     * Forgets the rendering, as the element has been modified
+     */
+    synchronized void clear() {
+        generation++;
+        this.entry = null;
+    }
+
+    /**
+     * Forgets a rendering dropped to keep the total under MAX_TOTAL_LENGTH, unless it has been replaced already
+     * 
+     * @param e the rendering dropped
+     */
+    private synchronized void evict(Entry e) {
+        if(this.entry == e) {
+            this.entry = null;
+        }
+    }
+
+    /**
+     * Returns an output recording what is written to the given one, to keep it once complete
+     * 
+     * @param out the output the rendering is written to
+     * @return the recorder
+     */
+    Recorder record(Appendable out) {
+        return new Recorder(out, generation);
+    }
+
+    /**
+     * A rendering, with the format and the depth it has been written with.
+     */
+    private static final class Entry {
+        private final RenderCache owner ;
+        private final OutputFormat format ;
+        private final int depth ;
+        private final String rendering ;
+        private final boolean metered ;
+        private final long elements ;
+        private final long attributes ;
+        private final long escapes ;
+        private final int maxDepth ;
+
+        Entry(RenderCache owner, OutputFormat format, int depth, String rendering, MeteredOutput counts) {
+            this.owner = owner;
+            this.format = format;
+            this.depth = depth;
+            this.rendering = rendering;
+            //Copied rather than kept, as the counting output refers to the output of the document
+            this.metered = counts != null;
+            this.elements = counts == null ? 0 : counts.elements;
+            this.attributes = counts == null ? 0 : counts.attributes;
+            this.escapes = counts == null ? 0 : counts.escapes;
+            this.maxDepth = counts == null ? 0 : counts.maxDepth;
+        }
+    }
+
+    /**
+     * An output holding what is written until it is complete, then keeping it in the cache and writing it out.
+     * 
+     * Once what is held goes over the limit of the cache, it is written out and the recorder only passes
+     * the rest through : a large rendering is streamed as if there were no cache.
+     * 
+     * If the output is metered, the element is written into output(), which counts it on the side :
+     * the counts are added to the output when finished, and kept with the rendering.
+     */
+    final class Recorder implements Appendable {
+        /**
+         * The output the rendering is written to.
+         */
+        private final Appendable out ;
+        /**
+         * The generation of the cache when the rendering was started.
+         */
+        private final int started ;
+        /**
+         * The counts of the rendering, if the output is metered, or null.
+         */
+        private final MeteredOutput counts ;
+        /**
+         * What has been written so far, or null once it has gone over the limit.
+         */
+        private StringBuilder held = new StringBuilder();
+
+        private Recorder(Appendable out, int started) {
+            this.out = out;
+            this.started = started;
+            this.counts = out instanceof MeteredOutput ? new MeteredOutput(this) : null;
+        }
+
+        /**
+         * Returns the output the element is to be written into
+         * 
+         * @return the recorder, or the output counting into it if the output is metered
+         */
+        Appendable output() {
+            return counts == null ? this : counts;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            if(csq == null) {
+                return append("null");
+            }
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            if(held != null && !overflows(end - start)) {
+                held.append(csq, start, end);
+            } else {
+                out.append(csq, start, end);
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            if(held != null && !overflows(1)) {
+                held.append(c);
+            } else {
+                out.append(c);
+            }
+            return this;
+        }
+
+        /**
+         * Writes out what is held if it would go over the limit, and stops holding
+         * 
+         * @param length the number of characters about to be written
+         * @return true if the rendering is over the limit
+         * @throws IOException if the output fails
+         */
+        private boolean overflows(int length) throws IOException {
+            if(held.length() + length <= maxLength) {
+                return false;
+            }
+            out.append(held);
+            held = null;
+            clear();
+            return true;
+        }
+
+        /**
+         * Keeps the rendering if it has been held whole, and writes out what is still held
+         * 
+         * @param format the format of the rendering
+         * @param depth the depth of the rendering
+         * @throws IOException if the output fails
+         */
+        void finish(OutputFormat format, int depth) throws IOException {
+            if(counts != null) {
+                ((MeteredOutput) out).add(counts.elements, counts.attributes, counts.escapes, counts.maxDepth);
+            }
+            if(held != null) {
+                out.append(put(format, depth, held, started, counts));
+                held = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class SerializationMetrics
+ * 
+ * Statistics of the elements written with a format obtained through OutputFormat.withMetrics :
+ * documents, elements, attributes, characters and bytes written, escaped characters, growths of the
+ * StringBuilder written into, depth and time spent.
+ * 
+ * Each document is counted into its own output wrapper, then added to the statistics at once, so that
+ * the counters shared between threads are updated once per document rather than once per element.
+ * Formats without metrics do not wrap anything, and pay only for a type check per element.
+ * Elements written from a cached rendering are only counted in characters.
+ * 
+ * The statistics can be exported through JMX, as a standard MBean :
+ * 
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName("com.kodintek.dumbxmlwriter:type=SerializationMetrics"));
+ * 
+ * @author Alix Ducros
+ */
+public class SerializationMetrics implements SerializationMetricsMBean {
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong elements = new AtomicLong();
+    private final AtomicLong attributes = new AtomicLong();
+    private final AtomicLong characters = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong escapes = new AtomicLong();
+    private final AtomicLong growths = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Writes an element through a counting output, and adds the counts to the statistics
+     * 
+     * @param element the element to write
+     * @param out the output to write into
+     * @param format the layout to use
+     * @param depth the depth the element is written at
+     * @throws IOException if the output fails
+     */
+    void write(Element element, Appendable out, OutputFormat format, int depth) throws IOException {
+        MeteredOutput metered = new MeteredOutput(out);
+        long start = System.nanoTime();
+        try {
+            element.write(metered, format, depth);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            documents.incrementAndGet();
+            elements.addAndGet(metered.elements);
+            attributes.addAndGet(metered.attributes);
+            characters.addAndGet(metered.characters);
+            bytes.addAndGet(metered.bytes());
+            escapes.addAndGet(metered.escapes);
+            growths.addAndGet(metered.growths);
+            totalNanos.addAndGet(nanos);
+            raise(maxDepth, metered.maxDepth);
+            raise(maxNanos, nanos);
+        }
+    }
+
+    @Override
+    public long getDocuments() {
+        return documents.get();
+    }
+
+    @Override
+    public long getElements() {
+        return elements.get();
+    }
+
+    @Override
+    public long getAttributes() {
+        return attributes.get();
+    }
+
+    @Override
+    public long getCharactersWritten() {
+        return characters.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytes.get();
+    }
+
+    @Override
+    public long getEscapes() {
+        return escapes.get();
+    }
+
+    @Override
+    public long getBufferGrowths() {
+        return growths.get();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    @Override
+    public long getAverageNanos() {
+        long count = documents.get();
+        return count == 0 ? 0 : totalNanos.get() / count;
+    }
+
+    @Override
+    public void reset() {
+        documents.set(0);
+        elements.set(0);
+        attributes.set(0);
+        characters.set(0);
+        bytes.set(0);
+        escapes.set(0);
+        growths.set(0);
+        maxDepth.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    /**
+     * Raises a maximum to the given value, if it is larger
+     */
+    private static void raise(AtomicLong max, long value) {
+        long current;
+        while(value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            //Another thread has changed the maximum, try again
+        }
+    }
+
+    /**
+     * Raises a maximum to the given value, if it is larger
+     */
+    private static void raise(AtomicInteger max, int value) {
+        int current;
+        while(value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            //Another thread has changed the maximum, try again
+        }
+    }
+}
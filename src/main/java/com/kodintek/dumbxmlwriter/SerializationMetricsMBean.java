@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+/**
+ * Interface SerializationMetricsMBean
+ * 
+ * The statistics of SerializationMetrics, as exposed through JMX.
+ * 
+ * @author Alix Ducros
+ */
+public interface SerializationMetricsMBean {
+
+    /**
+     * @return number of elements written as a whole document or subtree
+     */
+    long getDocuments();
+
+    /**
+     * @return number of elements written
+     */
+    long getElements();
+
+    /**
+     * @return number of attributes written
+     */
+    long getAttributes();
+
+    /**
+     * @return number of characters written
+     */
+    long getCharactersWritten();
+
+    /**
+     * @return number of bytes written, only counted when writing into a Utf8Output
+     */
+    long getBytesWritten();
+
+    /**
+     * @return number of characters replaced by an entity
+     */
+    long getEscapes();
+
+    /**
+     * @return number of times the StringBuilder written into had to grow
+     */
+    long getBufferGrowths();
+
+    /**
+     * @return the largest depth an element has been written at
+     */
+    int getMaxDepth();
+
+    /**
+     * @return the time spent writing, in nanoseconds
+     */
+    long getTotalNanos();
+
+    /**
+     * @return the longest time spent writing a single document, in nanoseconds
+     */
+    long getMaxNanos();
+
+    /**
+     * @return the average time spent writing a document, in nanoseconds
+     */
+    long getAverageNanos();
+
+    /**
+     * Sets every statistic back to zero
+     */
+    void reset();
+}
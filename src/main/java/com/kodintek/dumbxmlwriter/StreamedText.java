@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Class StreamedText
+ * 
+ * A text value read from its source only when the element is written, chunk by chunk,
+ * so that a large payload is never held in memory as a whole.
+ * 
+ * The source can be read only once : it is closed once read.
+ * 
+ * @author Alix Ducros
+ */
+final class StreamedText {
+    /**
+     * Number of chars read from the source at once.
+     */
+    static final int BUFFER_SIZE = 8192;
+    /**
+     * The source of the text.
+     */
+    private final Reader source ;
+    /**
+     * True if the whitespaces at both ends of the text are to be skipped.
+     */
+    private final boolean trim ;
+    /**
+     * True once the source has been read.
+     */
+    private boolean read ;
+
+    /**
+     * Initializes the text
+     * 
+     * @param source the source of the text
+     * @param trim true to skip the whitespaces at both ends of the text
+     */
+    StreamedText(Reader source, boolean trim) {
+        this.source = source;
+        this.trim = trim;
+    }
+
+    /**
+     * Reads the whole source and writes it, escaped if required
+     * 
+     * When trimming, the whitespaces read at the end of a chunk are held back until some other character follows them.
+     * 
+     * @throws IllegalStateException if the text has already been written
+     * 
+     * @param out the output to write into
+     * @param format the format telling whether the text is to be escaped
+     * @throws IOException if the source or the output fails
+     */
+    synchronized void writeTo(Appendable out, OutputFormat format) throws IOException {
+        if(read) {
+            throw new IllegalStateException("the text has already been read from its source.");
+        }
+        read = true;
+        char[] buffer = new char[BUFFER_SIZE];
+        CharBuffer chunk = CharBuffer.wrap(buffer);
+        StringBuilder pending = null;
+        boolean started = !trim;
+        try {
+            int n;
+            while((n = source.read(buffer)) != -1) {
+                int start = 0;
+                if(!trim) {
+                    format.text(out, chunk, 0, n);
+                    continue;
+                }
+                if(!started) {
+                    while(start < n && buffer[start] <= ' ') {
+                        start++;
+                    }
+                    if(start == n) {
+                        continue;
+                    }
+                    started = true;
+                }
+                int end = n;
+                while(end > start && buffer[end - 1] <= ' ') {
+                    end--;
+                }
+                if(end > start) {
+                    if(pending != null && pending.length() > 0) {
+                        format.text(out, pending);
+                        pending.setLength(0);
+                    }
+                    format.text(out, chunk, start, end);
+                }
+                if(end < n) {
+                    if(pending == null) {
+                        pending = new StringBuilder();
+                    }
+                    pending.append(buffer, end, n - end);
+                }
+            }
+        } finally {
+            source.close();
+        }
+    }
+}
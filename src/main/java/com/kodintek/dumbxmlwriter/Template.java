@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class Template
+ * 
+ * An Element tree compiled once into pre-rendered fragments with named holes, to render
+ * documents of the same shape by only supplying the changing values.
+ * 
+ * Holes are written '${name}' in the tree
+ * - as a whole attribute value or text value : replaced by the value of 'name', escaped.
+ *   A value merely containing '${name}' among other characters is written as is.
+ * - as the name of an element : a repeated section. The element itself is not written ; its
+ *   children are written once per item of the value of 'name', which must be an Iterable of Maps.
+ *   Inside a section, names are looked up in the item first, then in the enclosing values.
+ * 
+ * Typical use :
+ * 
+ * Element list = new Element("list");
+ * list.addAttribute("owner", "${owner}");
+ * Element rows = new Element("${rows}", list);
+ * new Element("row", rows).addTextChild("${value}");
+ * Template template = Template.compile(list);
+ * template.render(values, out);
+ * 
+ * A template is immutable, and can be rendered from several threads at once.
+ * 
+ * @author Alix Ducros
+ */
+public final class Template {
+    /**
+     * The pre-rendered fragments and the holes, in document order.
+     */
+    private final Part[] parts ;
+    /**
+     * The format the template has been compiled with.
+     */
+    private final OutputFormat format ;
+
+    /**
+     * Initializes the template
+     * 
+     * @param parts the fragments and the holes
+     * @param format the format the template has been compiled with
+     */
+    private Template(List<Part> parts, OutputFormat format) {
+        this.parts = parts.toArray(new Part[parts.size()]);
+        this.format = format;
+    }
+
+    /**
+     * Compiles a tree into a nicely indented template
+     * 
+     * @param root the root of the tree
+     * @return the template
+     */
+    public static Template compile(Element root) {
+        return compile(root, OutputFormat.PRETTY);
+    }
+
+    /**
+     * Compiles a tree into a template
+     * 
+     * @throws IllegalArgumentException if the root is null or is a section, or if the format has metrics, which are not recorded here
+     * 
+     * @param root the root of the tree
+     * @param format the layout to use
+     * @return the template
+     */
+    public static Template compile(Element root, OutputFormat format) {
+        if(root == null || format == null) {
+            throw new IllegalArgumentException("root and format cannot be null.");
+        }
+        format.checkWithoutMetrics("Template");
+        if(sectionName(root) != null) {
+            throw new IllegalArgumentException("the root cannot be a section.");
+        }
+        List<Element> elements = new ArrayList<>();
+        elements.add(root);
+        return compile(elements, format, root.getDepth());
+    }
+
+    /**
+     * Renders the template
+     * 
+     * @throws IllegalArgumentException if a value is missing
+     * 
+     * @param values the value of each hole, by name
+     * @return the rendering
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            render(values, sb);
+        } catch (IOException e) {
+            //StringBuilder never throws IOException
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders the template into the output
+     * 
+     * @throws IllegalArgumentException if a value is missing
+     * 
+     * @param values the value of each hole, by name
+     * @param out the output to write into
+     * @throws IOException if the output fails
+     */
+    public void render(Map<String, ?> values, Appendable out) throws IOException {
+        render(new Values(values, null), out);
+    }
+
+    /**
+     * Renders the template into the output
+     * 
+     * @param values the value of each hole
+     * @param out the output to write into
+     * @throws IOException if the output fails
+     */
+    private void render(Values values, Appendable out) throws IOException {
+        for(Part part : parts) {
+            part.write(values, out, format);
+        }
+    }
+
+    /**
+     * Compiles a list of sibling elements
+     * 
+     * @param elements the elements
+     * @param format the layout to use
+     * @param depth the depth of the elements
+     * @return the template rendering them
+     */
+    private static Template compile(List<Element> elements, OutputFormat format, int depth) {
+        Compiler compiler = new Compiler();
+        try {
+            for(Element e : elements) {
+                compile(e, format, depth, compiler);
+            }
+        } catch (IOException ex) {
+            //Only a streamed text can fail, everything else being written into builders
+            throw new IllegalStateException(ex);
+        }
+        compiler.addLiteral();
+        return new Template(compiler.parts, format);
+    }
+
+    /**
+     * Compiles an element into the parts
+     * 
+     * @param element the element
+     * @param format the layout to use
+     * @param depth the depth of the element
+     * @param compiler the output the element is compiled into
+     * @throws IOException if a streamed text fails
+     */
+    private static void compile(Element element, OutputFormat format, int depth, Compiler compiler) throws IOException {
+        String section = sectionName(element);
+        if(section != null) {
+            //The children of the section are written at the depth of the section itself
+            List<Element> children = element.getChildren();
+            compiler.addLiteral();
+            compiler.parts.add(new Section(section, compile(children == null ? new ArrayList<Element>() : children, format, depth)));
+            return;
+        }
+        if(!element.writeStart(compiler, format, depth)) {
+            return;
+        }
+        List<Element> children = element.getChildren();
+        if(children != null) {
+            for(Element child : children) {
+                compile(child, format, depth + 1, compiler);
+            }
+        }
+        element.writeEnd(compiler, format, depth);
+    }
+
+    /**
+     * Returns the name of the section an element stands for
+     * 
+     * @param element the element
+     * @return the name, or null if the element is not a section
+     */
+    private static String sectionName(Element element) {
+        return holeName(element.getName());
+    }
+
+    /**
+     * Returns the name of the hole a value stands for
+     * 
+     * @param value the value
+     * @return the name, or null if the value is not a whole '${name}'
+     */
+    private static String holeName(CharSequence value) {
+        int length = value.length();
+        if(length <= 3 || value.charAt(0) != '$' || value.charAt(1) != '{' || value.charAt(length - 1) != '}') {
+            return null;
+        }
+        for(int i = 2 ; i<length - 1 ; i++) {
+            if(value.charAt(i) == '}') {
+                //Several holes, or text around them
+                return null;
+            }
+        }
+        return value.subSequence(2, length - 1).toString();
+    }
+
+    /**
+     * The output a tree is compiled into : what is written is kept as literals, except the values
+     * which are holes, given to hole() by the format as they are written, and kept as slots.
+     */
+    static final class Compiler implements Appendable {
+        /**
+         * The parts compiled so far.
+         */
+        private final List<Part> parts = new ArrayList<>();
+        /**
+         * What has been written since the last part.
+         */
+        private final StringBuilder pending = new StringBuilder();
+
+        private Compiler() {
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            pending.append(csq);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            pending.append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            pending.append(c);
+            return this;
+        }
+
+        /**
+         * Keeps a value as a slot if it is a hole
+         * 
+         * @param value the value about to be written
+         * @param attribute true for an attribute value, false for a text value
+         * @return true if the value is a hole, which is not to be written
+         */
+        boolean hole(CharSequence value, boolean attribute) {
+            String name = holeName(value);
+            if(name == null) {
+                return false;
+            }
+            addLiteral();
+            parts.add(new Slot(name, attribute));
+            return true;
+        }
+
+        /**
+         * Keeps what has been written since the last part as a literal
+         */
+        void addLiteral() {
+            if(pending.length() > 0) {
+                parts.add(new Literal(pending.toString()));
+                pending.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * The values of a rendering : the ones of a section item, then the enclosing ones.
+     */
+    private static final class Values {
+        private final Map<String, ?> map ;
+        private final Values enclosing ;
+
+        Values(Map<String, ?> map, Values enclosing) {
+            if(map == null) {
+                throw new IllegalArgumentException("values cannot be null.");
+            }
+            this.map = map;
+            this.enclosing = enclosing;
+        }
+
+        Object get(String name) {
+            for(Values v = this ; v != null ; v = v.enclosing) {
+                Object value = v.map.get(name);
+                if(value != null) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("there is no value for : "+name);
+        }
+    }
+
+    /**
+     * A part of the template.
+     */
+    private abstract static class Part {
+        abstract void write(Values values, Appendable out, OutputFormat format) throws IOException;
+    }
+
+    /**
+     * A pre-rendered fragment, kept encoded for the outputs writing bytes.
+     */
+    private static final class Literal extends Part {
+        private final String text ;
+        private final byte[] encoded ;
+
+        Literal(String text) {
+            this.text = text;
+            this.encoded = text.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void write(Values values, Appendable out, OutputFormat format) throws IOException {
+            if(out instanceof Utf8Output) {
+                ((Utf8Output) out).writeEncoded(encoded);
+            } else {
+                out.append(text);
+            }
+        }
+    }
+
+    /**
+     * A hole for an attribute value or a text value.
+     */
+    private static final class Slot extends Part {
+        private final String name ;
+        private final boolean attribute ;
+
+        Slot(String name, boolean attribute) {
+            this.name = name;
+            this.attribute = attribute;
+        }
+
+        @Override
+        void write(Values values, Appendable out, OutputFormat format) throws IOException {
+            Object value = values.get(name);
+            CharSequence text = value instanceof CharSequence ? (CharSequence) value : String.valueOf(value);
+            if(attribute) {
+                format.attributeValue(out, text);
+            } else {
+                format.text(out, text);
+            }
+        }
+    }
+
+    /**
+     * A hole for a repeated section.
+     */
+    private static final class Section extends Part {
+        private final String name ;
+        private final Template body ;
+
+        Section(String name, Template body) {
+            this.name = name;
+            this.body = body;
+        }
+
+        @Override
+        void write(Values values, Appendable out, OutputFormat format) throws IOException {
+            Object items = values.get(name);
+            if(!(items instanceof Iterable)) {
+                throw new IllegalArgumentException("the value of section "+name+" must be an Iterable of Maps.");
+            }
+            for(Object item : (Iterable<?>) items) {
+                if(!(item instanceof Map)) {
+                    throw new IllegalArgumentException("the value of section "+name+" must be an Iterable of Maps.");
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, ?> map = (Map<String, ?>) item;
+                body.render(new Values(map, values), out);
+            }
+        }
+    }
+}
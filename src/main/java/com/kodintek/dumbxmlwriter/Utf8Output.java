@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Class Utf8Output
+ * 
+ * An output which encodes the XML into UTF-8 bytes directly into a ByteBuffer, as it is written.
+ * When the buffer is full, it is drained by the subclass (written to a channel, to a file...),
+ * so that no String nor byte array holding the whole document is ever created.
+ * 
+ * Unpaired surrogates are encoded as '?', like String.getBytes does.
+ * 
+ * @author Alix Ducros
+ */
+public abstract class Utf8Output implements Appendable, Flushable, Closeable {
+    /**
+     * Largest number of bytes a single code point is encoded into.
+     */
+    static final int MAX_BYTES_PER_CHAR = 4;
+    /**
+     * The buffer the bytes are encoded into.
+     */
+    protected ByteBuffer buffer ;
+    /**
+     * High surrogate waiting for its low surrogate, or 0.
+     */
+    private char highSurrogate ;
+    /**
+     * Number of bytes drained so far.
+     */
+    private long drained ;
+
+    /**
+     * Initializes the output
+     * 
+     * @throws IllegalArgumentException if the buffer is null or too small to hold a single encoded character
+     * 
+     * @param buffer the buffer to encode into, it is cleared first
+     */
+    protected Utf8Output(ByteBuffer buffer) {
+        if(buffer == null || buffer.capacity() < MAX_BYTES_PER_CHAR) {
+            throw new IllegalArgumentException("the buffer must be able to hold at least "+MAX_BYTES_PER_CHAR+" bytes.");
+        }
+        buffer.clear();
+        this.buffer = buffer;
+    }
+
+    /**
+     * Empties the buffer, making room for at least MAX_BYTES_PER_CHAR bytes
+     * 
+     * @throws IOException if the bytes cannot be written out
+     */
+    protected abstract void drain() throws IOException;
+
+    /**
+     * Returns the number of bytes written to this output so far, including the ones still in the buffer
+     * 
+     * @return number of bytes
+     */
+    public long getWrittenBytes() {
+        return drained + buffer.position();
+    }
+
+    @Override
+    public Utf8Output append(CharSequence csq) throws IOException {
+        if(csq == null) {
+            return append("null");
+        }
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Utf8Output append(CharSequence csq, int start, int end) throws IOException {
+        if(csq == null) {
+            return append("null", start, end);
+        }
+        int i = start;
+        while(i < end) {
+            int room = buffer.remaining();
+            if(room < MAX_BYTES_PER_CHAR) {
+                doDrain();
+                room = buffer.remaining();
+            }
+            //Encode as many characters as the buffer can surely hold without further checks
+            int limit = Math.min(end, i + room / MAX_BYTES_PER_CHAR);
+            for(; i < limit ; i++) {
+                char c = csq.charAt(i);
+                if(c < 0x80 && highSurrogate == 0) {
+                    buffer.put((byte) c);
+                } else {
+                    encode(c);
+                }
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Utf8Output append(char c) throws IOException {
+        if(buffer.remaining() < MAX_BYTES_PER_CHAR) {
+            doDrain();
+        }
+        encode(c);
+        return this;
+    }
+
+    /**
+     * Writes bytes which are already UTF-8 encoded
+     * 
+     * @param bytes the encoded bytes
+     * @throws IOException if the bytes cannot be written out
+     */
+    void writeEncoded(byte[] bytes) throws IOException {
+        if(highSurrogate != 0) {
+            highSurrogate = 0;
+            append('?');
+        }
+        int offset = 0;
+        while(offset < bytes.length) {
+            if(!buffer.hasRemaining()) {
+                doDrain();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes every buffered byte out
+     * 
+     * @throws IOException if the bytes cannot be written out
+     */
+    @Override
+    public void flush() throws IOException {
+        if(buffer.position() > 0) {
+            doDrain();
+        }
+    }
+
+    /**
+     * Writes every buffered byte out, then releases the target
+     * 
+     * A pending unpaired high surrogate is written as '?'.
+     * 
+     * @throws IOException if the bytes cannot be written out
+     */
+    @Override
+    public void close() throws IOException {
+        if(highSurrogate != 0) {
+            highSurrogate = 0;
+            append('?');
+        }
+        flush();
+    }
+
+    /**
+     * Drains the buffer, keeping track of the number of drained bytes
+     * 
+     * @throws IOException if the bytes cannot be written out
+     */
+    private void doDrain() throws IOException {
+        drained += buffer.position();
+        drain();
+    }
+
+    /**
+     * Encodes a character into the buffer, which must have room for MAX_BYTES_PER_CHAR bytes
+     * 
+     * @param c the character to encode
+     */
+    private void encode(char c) {
+        if(highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if(Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                return;
+            }
+            //The unpaired surrogate and the current character take at most 4 bytes
+            buffer.put((byte) '?');
+        }
+        if(c < 0x80) {
+            buffer.put((byte) c);
+        } else if(c < 0x800) {
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if(Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if(Character.isLowSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    /**
+     * Returns the number of bytes a part of a text is encoded into in UTF-8
+     * 
+     * @param cs the text
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return number of bytes
+     */
+    static long encodedLength(CharSequence cs, int start, int end) {
+        long length = 0;
+        for(int i = start ; i<end ; i++) {
+            char c = cs.charAt(i);
+            if(c < 0x80) {
+                length++;
+            } else if(c < 0x800) {
+                length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(cs.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if(Character.isSurrogate(c)) {
+                //Unpaired surrogates are encoded as '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Checks that a channel blocks until it has accepted what is written to it
+     * 
+     * @throws IllegalArgumentException if the channel is a non-blocking one
+     * 
+     * @param channel the channel to check
+     */
+    static void checkBlocking(WritableByteChannel channel) {
+        if(channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("the channel must be in blocking mode.");
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a blocking channel
+     * 
+     * @param channel the channel to write to
+     * @param bytes the bytes to write
+     * @throws IOException if the channel fails, or accepts nothing because it has been made non-blocking
+     */
+    static void writeFully(WritableByteChannel channel, ByteBuffer bytes) throws IOException {
+        while(bytes.hasRemaining()) {
+            if(channel.write(bytes) == 0) {
+                throw new IOException("the channel accepted no bytes : it must be in blocking mode.");
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.kodintek.dumbxmlwriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Class XmlStreamWriter
+ * 
+ * Writes XML forward-only, straight to an output, without building any Element tree.
+ * Only the names of the currently open elements are kept in memory.
+ * 
+ * The produced XML follows the same rules as Element.toString()
+ * - one node per line, indented according to its depth (depending on the OutputFormat)
+ * - elements without text nor children are self-closed
+ * 
+ * Typical use :
+ * 
+ * writer.startElement("root");
+ * writer.attribute("href", "/Converstaions/aaa");
+ * writer.startElement("p");
+ * writer.text("Coucou le monde !");
+ * writer.endElement();
+ * writer.element(anExistingElement);
+ * writer.endElement();
+ * 
+ * @author Alix Ducros
+ */
+public class XmlStreamWriter implements Closeable, Flushable {
+    /**
+     * The output the XML is written into.
+     */
+    private final Appendable out ;
+    /**
+     * The layout to use.
+     */
+    private final OutputFormat format ;
+    /**
+     * The names of the currently open elements, the last one being the current element.
+     */
+    private final List<Name> openElements = new ArrayList<>();
+    /**
+     * The depths of the open elements which already have a text value.
+     */
+    private final BitSet texts = new BitSet();
+    /**
+     * The attribute names of the current start tag, to detect duplicates.
+     */
+    private final List<Name> attributeNames = new ArrayList<>();
+    /**
+     * True while the start tag of the current element is not closed yet (attributes may still be added).
+     */
+    private boolean startTagOpen ;
+
+    /**
+     * Initializes the writer, nicely indented
+     * 
+     * @param out the output to write into
+     */
+    public XmlStreamWriter(Appendable out) {
+        this(out, OutputFormat.PRETTY);
+    }
+
+    /**
+     * Initializes the writer
+     * 
+     * If the format has metrics, each element given to element() is recorded as a document : the other events are not recorded.
+     * 
+     * @throws IllegalArgumentException if the output or the format is null
+     * 
+     * @param out the output to write into
+     * @param format the layout to use
+     */
+    public XmlStreamWriter(Appendable out, OutputFormat format) {
+        if(out == null || format == null) {
+            throw new IllegalArgumentException("output and format cannot be null.");
+        }
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Initializes the writer, writing UTF-8 encoded and nicely indented XML into the given stream
+     * 
+     * @param out the stream to write into
+     */
+    public XmlStreamWriter(OutputStream out) {
+        this(out, OutputFormat.PRETTY);
+    }
+
+    /**
+     * Initializes the writer, writing UTF-8 encoded XML into the given stream
+     * 
+     * @param out the stream to write into
+     * @param format the layout to use
+     */
+    public XmlStreamWriter(OutputStream out, OutputFormat format) {
+        this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), format);
+    }
+
+    /**
+     * Opens a new element, child of the current one
+     * 
+     * @throws IllegalArgumentException if the name of the element is null or empty
+     * 
+     * @param elementName the name of the element
+     * @throws IOException if the output fails
+     */
+    public void startElement(String elementName) throws IOException {
+        startElement(Name.lookup(elementName));
+    }
+
+    /**
+     * Opens a new element, child of the current one, from a name already looked up
+     * 
+     * @throws IllegalArgumentException if the name of the element is null
+     * 
+     * @param elementName the name of the element
+     * @throws IOException if the output fails
+     */
+    public void startElement(Name elementName) throws IOException {
+        if(elementName == null) {
+            throw new IllegalArgumentException("element must have a non-empty name.");
+        }
+        closeStartTag();
+        format.indent(out, openElements.size());
+        out.append('<');
+        elementName.writeTo(out);
+        openElements.add(elementName);
+        startTagOpen = true;
+    }
+
+    /**
+     * Adds an attribute to the current element
+     * 
+     * @throws InvalidAttributeException if the attribute name is null or empty, or if there is already an attribute with the same name
+     * @throws IllegalStateException if the current element already has a text value or children
+     * 
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     * @throws IOException if the output fails
+     */
+    public void attribute(String name, String value) throws IOException {
+        attribute(Name.lookup(name), value);
+    }
+
+    /**
+     * Adds an attribute to the current element, from a name already looked up
+     * 
+     * @throws InvalidAttributeException if the attribute name is null, or if there is already an attribute with the same name
+     * @throws IllegalStateException if the current element already has a text value or children
+     * 
+     * @param name the name of the attribute
+     * @param value the value of the attribute
+     * @throws IOException if the output fails
+     */
+    public void attribute(Name name, String value) throws IOException {
+        if(!startTagOpen) {
+            throw new IllegalStateException("attributes must be written right after the start of their element.");
+        }
+        if(name == null) {
+            throw new InvalidAttributeException("the name cannot have null or empty value.");
+        }
+        if(attributeNames.contains(name)) {
+            throw new InvalidAttributeException("the element already has an attribute with this name : "+name);
+        }
+        attributeNames.add(name);
+        out.append(' ');
+        Attributes.write(out, name, value == null ? "" : value, format);
+    }
+
+    /**
+     * Writes the text value of the current element
+     * 
+     * @throws InvalidChildException if the current element already has a text value
+     * @throws IllegalStateException if there is no open element
+     * 
+     * @param text the text of the element
+     * @throws IOException if the output fails
+     */
+    public void text(String text) throws IOException {
+        int depth = openElements.size();
+        if(depth == 0) {
+            throw new IllegalStateException("there is no open element to add the text to.");
+        }
+        if(texts.get(depth)) {
+            throw new InvalidChildException("the element has already a text child.");
+        }
+        closeStartTag();
+        texts.set(depth);
+        format.indent(out, depth);
+        format.text(out, text.trim());
+        format.newline(out);
+    }
+
+    /**
+     * Writes an existing element and all its descendants as a child of the current element
+     * 
+     * @throws InvalidChildException if the given element is null
+     * 
+     * @param element the element to write
+     * @throws IOException if the output fails
+     */
+    public void element(Element element) throws IOException {
+        if(element == null) {
+            throw new InvalidChildException("the child cannot have null value.");
+        }
+        closeStartTag();
+        SerializationMetrics metrics = format.getMetrics();
+        if(metrics != null) {
+            metrics.write(element, out, format, openElements.size());
+        } else {
+            element.write(out, format, openElements.size());
+        }
+    }
+
+    /**
+     * Closes the current element
+     * 
+     * @throws IllegalStateException if there is no open element
+     * 
+     * @throws IOException if the output fails
+     */
+    public void endElement() throws IOException {
+        int depth = openElements.size();
+        if(depth == 0) {
+            throw new IllegalStateException("there is no open element to close.");
+        }
+        Name name = openElements.remove(depth - 1);
+        texts.clear(depth);
+        //If there is no text value nor children, the element is made of only one block
+        if(startTagOpen) {
+            startTagOpen = false;
+            attributeNames.clear();
+            out.append("/>");
+            format.newline(out);
+            return;
+        }
+        format.indent(out, depth - 1);
+        out.append("</");
+        name.writeTo(out);
+        out.append('>');
+        format.newline(out);
+    }
+
+    /**
+     * Closes all the elements which are still open
+     * 
+     * @throws IOException if the output fails
+     */
+    public void endDocument() throws IOException {
+        while(!openElements.isEmpty()) {
+            endElement();
+        }
+    }
+
+    /**
+     * Flushes the underlying output, if it can be flushed
+     * 
+     * @throws IOException if the output fails
+     */
+    @Override
+    public void flush() throws IOException {
+        if(out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * Closes all the elements which are still open, then closes the underlying output, if it can be closed
+     * 
+     * @throws IOException if the output fails
+     */
+    @Override
+    public void close() throws IOException {
+        endDocument();
+        if(out instanceof Closeable) {
+            ((Closeable) out).close();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Closes the start tag of the current element if it is still open, as content is about to be written
+     * 
+     * @throws IOException if the output fails
+     */
+    private void closeStartTag() throws IOException {
+        if(startTagOpen) {
+            startTagOpen = false;
+            attributeNames.clear();
+            out.append('>');
+            format.newline(out);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class AttributesTest {
+    
+    public AttributesTest() {
+    }
+
+    /**
+     * Test of add and contains methods, of class Attributes.
+     */
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+        Attributes instance = new Attributes();
+        assertFalse(instance.contains(Name.of("a")));
+        instance.add(Name.of("a"), "1");
+        assertTrue(instance.contains(Name.of("a")));
+        assertFalse(instance.contains(Name.of("b")));
+        assertEquals(1, instance.size());
+        assertSame(Name.of("a"), instance.getName(0));
+        assertEquals("1", instance.getValue(0));
+    }
+
+    /**
+     * Test of add and contains methods, of class Attributes, above the threshold of the hashed index.
+     */
+    @Test
+    public void testAddAboveIndexThreshold() {
+        System.out.println("add");
+        Attributes instance = new Attributes();
+        int count = Attributes.INDEX_THRESHOLD * 3;
+        for(int i = 0 ; i<count ; i++) {
+            assertFalse(instance.contains(Name.of("a"+i)));
+            instance.add(Name.of("a"+i), Integer.toString(i));
+        }
+        assertEquals(count, instance.size());
+        for(int i = 0 ; i<count ; i++) {
+            assertTrue(instance.contains(Name.of("a"+i)));
+            assertSame(Name.of("a"+i), instance.getName(i));
+            assertEquals(Integer.toString(i), instance.getValue(i));
+        }
+        assertFalse(instance.contains(Name.of("a"+count)));
+    }
+
+    /**
+     * Test of writeTo method, of class Attributes : the insertion order is kept.
+     */
+    @Test
+    public void testWriteTo() throws Exception {
+        System.out.println("writeTo");
+        Attributes instance = new Attributes();
+        instance.add(Name.of("z"), "1");
+        instance.add(Name.of("a"), "2");
+        instance.add(Name.of("m"), "3");
+        StringBuilder sb = new StringBuilder();
+        instance.writeTo(sb, OutputFormat.PRETTY);
+        assertEquals(" z=\"1\" a=\"2\" m=\"3\"", sb.toString());
+    }
+    
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class BatchWriterTest {
+    
+    public BatchWriterTest() {
+    }
+
+    /**
+     * Builds the given number of events.
+     */
+    private static List<Element> events(int count) {
+        List<Element> events = new ArrayList<>();
+        Element parent = new Element("parent");
+        for(int i = 0 ; i<count ; i++) {
+            //The parent of an event must not change the way it is written
+            Element event = new Element("event", parent);
+            event.addAttribute("id", Integer.toString(i));
+            new Element("msg", event).addTextChild("é & "+i);
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Test of write method, of class BatchWriter, one document per line.
+     */
+    @Test
+    public void testNewline() throws Exception {
+        System.out.println("newline");
+        StringWriter out = new StringWriter();
+        try(BatchWriter batch = new BatchWriter(out, OutputFormat.COMPACT, BatchWriter.Framing.NEWLINE)) {
+            batch.writeAll(events(2));
+            assertEquals(2, batch.getCount());
+        }
+        assertEquals("<event id=\"0\"><msg>é &amp; 0</msg></event>\n<event id=\"1\"><msg>é &amp; 1</msg></event>\n", out.toString());
+    }
+
+    /**
+     * Test of write method, of class BatchWriter, in an envelope.
+     */
+    @Test
+    public void testEnvelope() throws Exception {
+        System.out.println("envelope");
+        StringBuilder out = new StringBuilder();
+        try(BatchWriter batch = new BatchWriter(out, OutputFormat.PRETTY, BatchWriter.Framing.ENVELOPE, "events", 16)) {
+            batch.writeAll(events(2));
+        }
+        Element envelope = new Element("events");
+        for(Element event : events(2)) {
+            envelope.addChild(event);
+        }
+        assertEquals(envelope.toString(), out.toString());
+    }
+
+    /**
+     * Test of close method, of class BatchWriter, with an empty envelope.
+     */
+    @Test
+    public void testEmptyEnvelope() throws Exception {
+        System.out.println("envelope");
+        StringBuilder out = new StringBuilder();
+        new BatchWriter(out, OutputFormat.COMPACT, BatchWriter.Framing.ENVELOPE).close();
+        assertEquals("<batch/>", out.toString());
+    }
+
+    /**
+     * Test of write method, of class BatchWriter, each document preceded by its length in bytes.
+     */
+    @Test
+    public void testLengthPrefixed() throws Exception {
+        System.out.println("length prefixed");
+        StringBuilder out = new StringBuilder();
+        try(BatchWriter batch = new BatchWriter(out, OutputFormat.COMPACT, BatchWriter.Framing.LENGTH_PREFIXED)) {
+            batch.writeAll(events(12));
+        }
+        String rest = out.toString();
+        int documents = 0;
+        while(!rest.isEmpty()) {
+            int newline = rest.indexOf('\n');
+            int length = Integer.parseInt(rest.substring(0, newline));
+            byte[] bytes = rest.substring(newline + 1).getBytes(StandardCharsets.UTF_8);
+            String document = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            assertEquals(events(documents + 1).get(documents).toString(true), document);
+            rest = rest.substring(newline + 1 + document.length());
+            documents++;
+        }
+        assertEquals(12, documents);
+    }
+
+    /**
+     * Test of the flush threshold, of class BatchWriter : the output receives the documents before the batch is closed.
+     */
+    @Test
+    public void testFlushThreshold() throws Exception {
+        System.out.println("flush threshold");
+        StringBuilder out = new StringBuilder();
+        BatchWriter batch = new BatchWriter(out, OutputFormat.COMPACT, BatchWriter.Framing.NEWLINE, null, 100);
+        batch.writeAll(events(2));
+        assertEquals(0, out.length());
+        batch.writeAll(events(2));
+        assertTrue(out.length() >= 100);
+        batch.close();
+        assertEquals(4, out.toString().split("\n").length);
+    }
+
+    /**
+     * Test of write method, of class BatchWriter, once closed.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testWriteWhenClosed() throws Exception {
+        System.out.println("write");
+        BatchWriter batch = new BatchWriter(new StringBuilder(), OutputFormat.COMPACT, BatchWriter.Framing.NEWLINE);
+        batch.close();
+        batch.write(new Element("a"));
+    }
+    
+}
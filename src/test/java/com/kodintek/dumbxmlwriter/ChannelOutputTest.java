@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class ChannelOutputTest {
+    
+    public ChannelOutputTest() {
+    }
+
+    /**
+     * Builds a tree made of ASCII and non ASCII characters.
+     */
+    private static Element buildTree() {
+        Element root = new Element("root");
+        root.addAttribute("lang", "fr");
+        for(int i = 0 ; i<50 ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("id", Integer.toString(i));
+            item.addTextChild("Coucou le monde ! été € 😀 "+i);
+        }
+        return root;
+    }
+
+    /**
+     * Test of the encoded output : it must match the UTF-8 bytes of toString, whatever the buffer size.
+     */
+    @Test
+    public void testSameAsToString() throws Exception {
+        System.out.println("ChannelOutput");
+        Element root = buildTree();
+        byte[] expResult = root.toString().getBytes(StandardCharsets.UTF_8);
+        for(int capacity : new int[]{4, 5, 7, 64, 1024}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ChannelOutput out = new ChannelOutput(Channels.newChannel(bytes), capacity, capacity % 2 == 0);
+            root.writeTo(out);
+            out.close();
+            assertArrayEquals(expResult, bytes.toByteArray());
+            assertEquals(expResult.length, out.getWrittenBytes());
+        }
+    }
+
+    /**
+     * Test of the encoding of a surrogate pair split over two calls, and of unpaired surrogates.
+     */
+    @Test
+    public void testSurrogates() throws Exception {
+        System.out.println("ChannelOutput surrogates");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelOutput out = new ChannelOutput(Channels.newChannel(bytes), 4, false);
+        out.append('\ud83d');
+        out.append('\ude00');
+        out.append("a\ud83db\ude00c\ud83d");
+        out.close();
+        assertEquals("😀a?b?c?", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test of encodedLength method, of class Utf8Output : it must count the bytes the output writes.
+     */
+    @Test
+    public void testEncodedLength() throws Exception {
+        System.out.println("encodedLength");
+        String s = "aé€😀\uD800";
+        assertEquals(1 + 2 + 3 + 4 + 1, Utf8Output.encodedLength(s, 0, s.length()));
+        assertEquals(2 + 3, Utf8Output.encodedLength(s, 1, 3));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ChannelOutput out = new ChannelOutput(Channels.newChannel(bytes), 4, false)) {
+            out.append(s);
+        }
+        assertEquals(bytes.size(), Utf8Output.encodedLength(s, 0, s.length()));
+    }
+
+    /**
+     * Test of the output to a file channel, reusing the same buffer twice.
+     */
+    @Test
+    public void testFileChannel() throws Exception {
+        System.out.println("ChannelOutput file");
+        Element root = buildTree();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        File file = File.createTempFile("dumbxml", ".xml");
+        try {
+            for(int i = 0 ; i<2 ; i++) {
+                FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+                channel.truncate(0);
+                try (ChannelOutput out = new ChannelOutput(channel, buffer)) {
+                    root.writeTo(out, OutputFormat.COMPACT);
+                }
+                assertEquals(root.toString(true), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test of the constructor with a buffer too small to hold a character.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitializationWithSmallBuffer() {
+        System.out.println("Constructor");
+        new ChannelOutput(Channels.newChannel(new ByteArrayOutputStream()), 3, false);
+    }
+    
+}
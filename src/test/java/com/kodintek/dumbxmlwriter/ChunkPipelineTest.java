@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class ChunkPipelineTest {
+    
+    private ExecutorService executor ;
+    
+    public ChunkPipelineTest() {
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Builds a catalog of the given number of items, with non ASCII texts.
+     */
+    private static Element catalog(int items) {
+        Element root = new Element("catalog");
+        for(int i = 0 ; i<items ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("id", Integer.toString(i));
+            new Element("name", item).addTextChild("Produit numéro "+i+" & co");
+        }
+        return root;
+    }
+
+    /**
+     * Test of render and transferTo methods, of class ChunkPipeline.
+     */
+    @Test
+    public void testRender() throws Exception {
+        System.out.println("render");
+        Element root = catalog(1000);
+        ChunkPipeline pipeline = ChunkPipeline.render(root, OutputFormat.PRETTY, executor, 256, 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        pipeline.transferTo(Channels.newChannel(bytes));
+        assertEquals(root.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        assertNull(pipeline.take());
+    }
+
+    /**
+     * Test of the memory held with a slow consumer : the producer waits for the chunks to be released.
+     */
+    @Test
+    public void testSlowConsumer() throws Exception {
+        System.out.println("slow consumer");
+        Element root = catalog(5000);
+        int chunkSize = 1024;
+        int chunks = 4;
+        ChunkPipeline pipeline = ChunkPipeline.render(root, OutputFormat.COMPACT, executor, chunkSize, chunks);
+        
+        //The producer fills every chunk, then waits
+        awaitPending(pipeline, chunks);
+        assertEquals(chunks, pipeline.pendingChunks());
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int taken = 0;
+        for(ByteBuffer chunk = pipeline.take() ; chunk != null ; chunk = pipeline.take()) {
+            assertTrue(pipeline.pendingChunks() < chunks);
+            assertTrue(chunk.remaining() <= chunkSize);
+            bytes.write(chunk.array(), chunk.position(), chunk.remaining());
+            if(taken++ % 50 == 0) {
+                //Holding the chunk : the producer fills the others, then waits again rather than going past them
+                awaitPending(pipeline, chunks - 1);
+                assertTrue(pipeline.pendingChunks() <= chunks - 1);
+            }
+            pipeline.release(chunk);
+        }
+        String xml = root.toString(true);
+        assertEquals(xml, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(taken > 100);
+    }
+
+    /**
+     * Waits for the producer to have filled the given number of chunks, or for the document to be complete.
+     */
+    private static void awaitPending(ChunkPipeline pipeline, int chunks) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(pipeline.pendingChunks() < chunks && !pipeline.isComplete()) {
+            assertTrue("the producer has not filled "+chunks+" chunks in time", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Test of cancel method, of class ChunkPipeline : the waiting producer gives up.
+     */
+    @Test
+    public void testCancel() throws Exception {
+        System.out.println("cancel");
+        ChunkPipeline pipeline = ChunkPipeline.render(catalog(5000), OutputFormat.COMPACT, executor, 1024, 2);
+        assertNotNull(pipeline.take());
+        pipeline.cancel();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test of release method, of class ChunkPipeline, after cancel : the chunk is not needed any more, and nothing fails.
+     */
+    @Test
+    public void testReleaseAfterCancel() throws Exception {
+        System.out.println("release");
+        ChunkPipeline pipeline = ChunkPipeline.render(catalog(5000), OutputFormat.COMPACT, executor, 1024, 2);
+        List<ByteBuffer> taken = new ArrayList<>();
+        taken.add(pipeline.take());
+        taken.add(pipeline.take());
+        //Every chunk is held by the consumer : the producer waits for one
+        pipeline.cancel();
+        pipeline.cancel();
+        for(ByteBuffer chunk : taken) {
+            pipeline.release(chunk);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        try {
+            pipeline.take();
+            fail("the producer must have failed");
+        } catch(IOException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Test of take method, of class ChunkPipeline, when the producer fails.
+     */
+    @Test(expected = IOException.class)
+    public void testProducerFailure() throws Exception {
+        System.out.println("take");
+        Element root = new Element("root");
+        root.addTextChild(new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("broken source");
+            }
+
+            @Override
+            public void close() {
+            }
+        }, true);
+        ChunkPipeline pipeline = ChunkPipeline.render(root, OutputFormat.COMPACT, executor, 1024, 2);
+        for(ByteBuffer chunk = pipeline.take() ; chunk != null ; chunk = pipeline.take()) {
+            pipeline.release(chunk);
+        }
+    }
+
+    /**
+     * Test of the constructor of class ChunkPipeline, with a single chunk.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingleChunk() {
+        System.out.println("ChunkPipeline");
+        new ChunkPipeline(1024, 1);
+    }
+    
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class CompactDocumentTest {
+    
+    public CompactDocumentTest() {
+    }
+
+    /**
+     * Test of writeTo method, of class CompactDocument : the output is the one of the matching Element tree.
+     */
+    @Test
+    public void testWriteToLikeElement() {
+        System.out.println("writeTo");
+        Element root = new Element("catalog");
+        root.addAttribute("version", "1.0");
+        CompactDocument doc = new CompactDocument("catalog");
+        doc.addAttribute(CompactDocument.ROOT, "version", "1.0");
+        for(int i = 0 ; i<3 ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("id", Integer.toString(i));
+            item.addAttribute("title", "<a & \"b\">");
+            new Element("name", item).addTextChild("  Product & co "+i);
+            new Element("empty", item);
+            
+            int node = doc.addElement(CompactDocument.ROOT, "item");
+            doc.addAttribute(node, "id", Integer.toString(i));
+            doc.addAttribute(node, "title", "<a & \"b\">");
+            doc.addTextChild(doc.addElement(node, "name"), "  Product & co "+i);
+            doc.addElement(node, "empty");
+        }
+        assertEquals(root.toString(), doc.toString());
+        assertEquals(root.toString(true), doc.toString(true));
+        OutputFormat unescaped = OutputFormat.PRETTY.withoutEscaping();
+        assertEquals(root.toString(unescaped), doc.toString(unescaped));
+    }
+
+    /**
+     * Test of writeTo method, of class CompactDocument, on random trees.
+     */
+    @Test
+    public void testWriteToRandomTrees() {
+        System.out.println("writeTo random trees");
+        Random random = new Random(42);
+        for(int t = 0 ; t<50 ; t++) {
+            Element root = new Element("root");
+            CompactDocument doc = new CompactDocument("root", 1);
+            List<Element> elements = new ArrayList<>();
+            elements.add(root);
+            int count = 1 + random.nextInt(200);
+            for(int i = 1 ; i<count ; i++) {
+                int parent = random.nextInt(elements.size());
+                String name = "e"+random.nextInt(5);
+                Element e = new Element(name, elements.get(parent));
+                int node = doc.addElement(parent, name);
+                assertEquals(elements.size(), node);
+                elements.add(e);
+                if(random.nextBoolean()) {
+                    e.addAttribute("a", "v"+i);
+                    doc.addAttribute(node, "a", "v"+i);
+                }
+                if(random.nextInt(3) == 0) {
+                    e.addTextChild("t<"+i);
+                    doc.addTextChild(node, "t<"+i);
+                }
+            }
+            assertEquals(root.toString(), doc.toString());
+            assertEquals(root.toString(true), doc.toString(true));
+        }
+    }
+
+    /**
+     * Test of writeTo method, of class CompactDocument, on a document too deep to be written recursively.
+     */
+    @Test
+    public void testWriteToDeep() {
+        System.out.println("writeTo deep");
+        int depth = 100000;
+        CompactDocument doc = new CompactDocument("root");
+        int node = CompactDocument.ROOT;
+        for(int i = 1 ; i<depth ; i++) {
+            node = doc.addElement(node, "child");
+        }
+        doc.addTextChild(node, "leaf");
+        StringBuilder expected = new StringBuilder("<root>");
+        for(int i = 1 ; i<depth ; i++) {
+            expected.append("<child>");
+        }
+        expected.append("leaf");
+        for(int i = 1 ; i<depth ; i++) {
+            expected.append("</child>");
+        }
+        expected.append("</root>");
+        assertEquals(expected.toString(), doc.toString(true));
+        assertEquals(depth, doc.size());
+    }
+
+    /**
+     * Test of the accessors of class CompactDocument.
+     */
+    @Test
+    public void testAccessors() {
+        System.out.println("accessors");
+        CompactDocument doc = new CompactDocument(" root ");
+        int a = doc.addElement(CompactDocument.ROOT, "a");
+        int b = doc.addElement(CompactDocument.ROOT, Name.of("b"));
+        doc.addAttribute(b, " id ", "7");
+        doc.addTextChild(a, " text ");
+        assertEquals("root", doc.getName(CompactDocument.ROOT));
+        assertEquals(CompactDocument.NONE, doc.getParent(CompactDocument.ROOT));
+        assertEquals(a, doc.getFirstChild(CompactDocument.ROOT));
+        assertEquals(b, doc.getNextSibling(a));
+        assertEquals(CompactDocument.NONE, doc.getNextSibling(b));
+        assertEquals(CompactDocument.ROOT, doc.getParent(b));
+        assertEquals("text", doc.getText(a));
+        assertNull(doc.getText(b));
+        assertEquals("7", doc.getAttribute(b, "id"));
+        assertNull(doc.getAttribute(b, "other"));
+        assertNull(doc.getAttribute(a, "id"));
+    }
+
+    /**
+     * Test of addAttribute method, of class CompactDocument, with a name already used.
+     */
+    @Test(expected = InvalidAttributeException.class)
+    public void testAddAttributeTwice() {
+        System.out.println("addAttribute");
+        CompactDocument doc = new CompactDocument("root");
+        doc.addAttribute(CompactDocument.ROOT, "id", "1");
+        doc.addAttribute(CompactDocument.ROOT, "id ", "2");
+    }
+
+    /**
+     * Test of addTextChild method, of class CompactDocument, when there is already a text value.
+     */
+    @Test(expected = InvalidChildException.class)
+    public void testAddTextChildTwice() {
+        System.out.println("addTextChild");
+        CompactDocument doc = new CompactDocument("root");
+        doc.addTextChild(CompactDocument.ROOT, "a");
+        doc.addTextChild(CompactDocument.ROOT, "b");
+    }
+
+    /**
+     * Test of addElement method, of class CompactDocument, with no such parent.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testAddElementToMissingParent() {
+        System.out.println("addElement");
+        new CompactDocument("root").addElement(1, "a");
+    }
+
+    /**
+     * Test of grow method, of class CompactDocument : past about 1.4 billion entries, the arrays grow to the largest size allowed.
+     */
+    @Test
+    public void testGrow() {
+        System.out.println("grow");
+        assertEquals(16 + 8 + 1, CompactDocument.grow(16, 17));
+        assertEquals(1000, CompactDocument.grow(16, 1000));
+        assertEquals(CompactDocument.MAX_CAPACITY, CompactDocument.grow(1500000000, 1500000001));
+        assertEquals(CompactDocument.MAX_CAPACITY, CompactDocument.grow(CompactDocument.MAX_CAPACITY - 1, CompactDocument.MAX_CAPACITY));
+        for(int required : new int[]{CompactDocument.MAX_CAPACITY + 1, Integer.MAX_VALUE + 1}) {
+            try {
+                CompactDocument.grow(CompactDocument.MAX_CAPACITY, required);
+                fail("the capacity cannot go past the largest array");
+            } catch(OutOfMemoryError e) {
+                //expected
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class ConcurrentElementTest {
+    
+    private static final int THREADS = 16;
+    private static final int CHILDREN_PER_THREAD = 5000;
+    
+    public ConcurrentElementTest() {
+    }
+
+    /**
+     * Runs the task on THREADS threads started at the same time, and waits for them all.
+     */
+    private static void runConcurrently(final Runnable task) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for(int i = 0 ; i<THREADS ; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    task.run();
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Test of addChild method, of class ConcurrentElement, from many threads : no child may be lost.
+     */
+    @Test
+    public void testAddChildConcurrently() throws Exception {
+        System.out.println("addChild concurrently");
+        final ConcurrentElement root = new ConcurrentElement("root");
+        final AtomicInteger ids = new AtomicInteger();
+        runConcurrently(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0 ; i<CHILDREN_PER_THREAD ; i++) {
+                    Element record = new Element("record");
+                    record.addAttribute("id", Integer.toString(ids.getAndIncrement()));
+                    root.addChild(record);
+                }
+            }
+        });
+        List<Element> children = root.getChildren();
+        assertEquals(THREADS * CHILDREN_PER_THREAD, children.size());
+        boolean[] seen = new boolean[THREADS * CHILDREN_PER_THREAD];
+        for(Element child : children) {
+            int id = Integer.parseInt(child.getAttribute("id"));
+            assertFalse(seen[id]);
+            seen[id] = true;
+        }
+    }
+
+    /**
+     * Test of addAttribute method, of class ConcurrentElement, from many threads : a name can only be added once.
+     */
+    @Test
+    public void testAddAttributeConcurrently() throws Exception {
+        System.out.println("addAttribute concurrently");
+        final ConcurrentElement root = new ConcurrentElement("root");
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0 ; i<100 ; i++) {
+                    try {
+                        root.addAttribute("a"+i, Thread.currentThread().getName());
+                        added.incrementAndGet();
+                    } catch (InvalidAttributeException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+            }
+        });
+        assertEquals(100, added.get());
+        assertEquals(100 * (THREADS - 1), rejected.get());
+        assertEquals(100, root.toString(true).split("=").length - 1);
+    }
+
+    /**
+     * Test of the deterministic ordering of the children, of class ConcurrentElement.
+     */
+    @Test
+    public void testOrder() throws Exception {
+        System.out.println("order");
+        final ConcurrentElement root = new ConcurrentElement("root", new Comparator<Element>() {
+            @Override
+            public int compare(Element e1, Element e2) {
+                return Integer.compare(Integer.parseInt(e1.getAttribute("id")), Integer.parseInt(e2.getAttribute("id")));
+            }
+        });
+        final AtomicInteger ids = new AtomicInteger();
+        runConcurrently(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0 ; i<100 ; i++) {
+                    Element record = new Element("r");
+                    record.addAttribute("id", Integer.toString(ids.getAndIncrement()));
+                    root.addChild(record);
+                }
+            }
+        });
+        StringBuilder expResult = new StringBuilder("<root>");
+        for(int i = 0 ; i<THREADS * 100 ; i++) {
+            expResult.append("<r id=\"").append(i).append("\"/>");
+        }
+        expResult.append("</root>");
+        assertEquals(expResult.toString(), root.toString(true));
+    }
+
+    /**
+     * Test of toString method, of class ConcurrentElement : the layout is the one of Element.
+     */
+    @Test
+    public void testToString() {
+        System.out.println("toString");
+        ConcurrentElement root = new ConcurrentElement("root");
+        root.addAttribute("href", "/Converstaions/aaa");
+        root.addTextChild("Yo mec.");
+        new Element("p", root).addTextChild("Coucou le monde !");
+        Element expResult = new Element("root");
+        expResult.addAttribute("href", "/Converstaions/aaa");
+        expResult.addTextChild("Yo mec.");
+        new Element("p", expResult).addTextChild("Coucou le monde !");
+        assertEquals(expResult.toString(), root.toString());
+        assertEquals("/Converstaions/aaa", root.getAttribute(" href "));
+    }
+
+    /**
+     * Test of addChild method, of class ConcurrentElement, when moving a child to another parent.
+     */
+    @Test
+    public void testAddChildMove() {
+        System.out.println("addChild");
+        ConcurrentElement first = new ConcurrentElement("first");
+        Element second = new Element("second");
+        Element child = new Element("child", first);
+        second.addChild(child);
+        assertEquals("<first/>", first.toString(true));
+        first.addChild(child);
+        assertEquals("<second/>", second.toString(true));
+        assertEquals("<first><child/></first>", first.toString(true));
+    }
+    
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class DeflaterOutputTest {
+    
+    public DeflaterOutputTest() {
+    }
+
+    /**
+     * Builds a tree large enough to fill several buffers.
+     */
+    private static Element buildTree(int items) {
+        Element root = new Element("root");
+        for(int i = 0 ; i<items ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("id", Integer.toString(i));
+            item.addTextChild("Coucou le monde ! été € 😀 "+(i * 7919 % 1000));
+        }
+        return root;
+    }
+
+    /**
+     * Reads a whole stream.
+     */
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int n;
+        while((n = in.read(chunk)) != -1) {
+            bytes.write(chunk, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Test of the gzip output : once decompressed by GZIPInputStream, it must match the UTF-8 bytes of toString.
+     */
+    @Test
+    public void testGzip() throws Exception {
+        System.out.println("DeflaterOutput gzip");
+        for(int items : new int[]{0, 10, 20000}) {
+            Element root = buildTree(items);
+            byte[] expResult = root.toString(OutputFormat.COMPACT).getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DeflaterOutput out = new DeflaterOutput(bytes);
+            root.writeTo(out, OutputFormat.COMPACT);
+            out.close();
+            assertArrayEquals(expResult, readAll(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+            assertEquals(expResult.length, out.getWrittenBytes());
+            assertTrue(bytes.size() < expResult.length || items == 0);
+        }
+    }
+
+    /**
+     * Test of the zlib output, at every level.
+     */
+    @Test
+    public void testZlib() throws Exception {
+        System.out.println("DeflaterOutput zlib");
+        Element root = buildTree(5000);
+        byte[] expResult = root.toString().getBytes(StandardCharsets.UTF_8);
+        for(int level = -1 ; level<=9 ; level++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DeflaterOutput out = new DeflaterOutput(Channels.newChannel(bytes), DeflaterOutput.Container.ZLIB, level, DeflaterOutput.FlushPolicy.NONE);
+            root.writeTo(out);
+            out.close();
+            assertArrayEquals(expResult, readAll(new InflaterInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+        }
+    }
+
+    /**
+     * Test of the flush policies : after a sync or full flush, everything written so far can be decompressed.
+     */
+    @Test
+    public void testFlushPolicy() throws Exception {
+        System.out.println("DeflaterOutput flush policy");
+        for(DeflaterOutput.FlushPolicy policy : new DeflaterOutput.FlushPolicy[]{DeflaterOutput.FlushPolicy.SYNC, DeflaterOutput.FlushPolicy.FULL}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DeflaterOutput out = new DeflaterOutput(Channels.newChannel(bytes), DeflaterOutput.Container.ZLIB, 6, policy);
+            out.append("<root>first part");
+            out.flush();
+            Inflater inflater = new Inflater();
+            inflater.setInput(bytes.toByteArray());
+            byte[] result = new byte[100];
+            int n = inflater.inflate(result);
+            inflater.end();
+            assertEquals("<root>first part", new String(result, 0, n, StandardCharsets.UTF_8));
+            out.append("</root>");
+            out.close();
+            assertEquals("<root>first part</root>", new String(readAll(new InflaterInputStream(new ByteArrayInputStream(bytes.toByteArray()))), StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeflaterOutput out = new DeflaterOutput(bytes);
+        out.append("<root/>");
+        out.flush();
+        assertEquals(10, bytes.size());
+        out.close();
+    }
+
+    /**
+     * Test of the pooling : a closed output gives its Deflater back, and refuses further writes.
+     */
+    @Test
+    public void testPooling() throws Exception {
+        System.out.println("DeflaterOutput pooling");
+        Deflater deflater = DeflaterPool.takeDeflater(3, true);
+        DeflaterPool.releaseDeflater(deflater, 3, true);
+        assertSame(deflater, DeflaterPool.takeDeflater(3, true));
+        DeflaterPool.releaseDeflater(deflater, 3, true);
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeflaterOutput out = new DeflaterOutput(Channels.newChannel(bytes), DeflaterOutput.Container.GZIP, 3, DeflaterOutput.FlushPolicy.NONE);
+        out.append("<a/>");
+        out.close();
+        out.close();
+        try {
+            out.append("<b/>");
+            fail("a closed output must refuse writes");
+        } catch(IOException e) {
+            //expected
+        }
+        assertEquals("<a/>", new String(readAll(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test of the arguments check.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        System.out.println("DeflaterOutput invalid level");
+        new DeflaterOutput(Channels.newChannel(new ByteArrayOutputStream()), DeflaterOutput.Container.GZIP, 10, DeflaterOutput.FlushPolicy.NONE);
+    }
+
+    /**
+     * Test of the constructor with a non-blocking channel : it is refused rather than spun on.
+     */
+    @Test
+    public void testNonBlockingChannel() throws Exception {
+        System.out.println("DeflaterOutput non-blocking channel");
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.sink().configureBlocking(false);
+            new DeflaterOutput(pipe.sink());
+            fail("a non-blocking channel must be refused");
+        } catch(IllegalArgumentException e) {
+            //expected
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    /**
+     * Test of close method, of class DeflaterOutput, when the channel fails to write then to close :
+     * the first failure is thrown, with the second one suppressed.
+     */
+    @Test
+    public void testCloseFailure() throws Exception {
+        System.out.println("DeflaterOutput close");
+        final IOException writeFailure = new IOException("write");
+        final IOException closeFailure = new IOException("close");
+        DeflaterOutput out = new DeflaterOutput(new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw writeFailure;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                throw closeFailure;
+            }
+        });
+        out.append("<a/>");
+        try {
+            out.close();
+            fail("close must fail");
+        } catch(IOException e) {
+            assertSame(writeFailure, e);
+            assertArrayEquals(new Throwable[]{closeFailure}, e.getSuppressed());
+        }
+    }
+}
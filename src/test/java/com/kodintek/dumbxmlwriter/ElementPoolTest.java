@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class ElementPoolTest {
+    
+    public ElementPoolTest() {
+    }
+
+    /**
+     * The identifiers of the items of the responses.
+     */
+    private static final String[] IDS = {"i0", "i1", "i2"};
+
+    /**
+     * Builds a small response in the given scope
+     */
+    private static Element response(ElementPool.Scope scope, String status) {
+        Element response = scope.element("response");
+        response.addAttribute("version", "1");
+        scope.element("status", response).addTextChild(status);
+        for(int i = 0 ; i<IDS.length ; i++) {
+            scope.element("item", response).addAttribute("id", IDS[i]);
+        }
+        return response;
+    }
+
+    /**
+     * Test of open method, of class ElementPool : the elements are given back and used again with a clean state.
+     */
+    @Test
+    public void testOpen() {
+        System.out.println("open");
+        ElementPool pool = new ElementPool();
+        Element first ;
+        try(ElementPool.Scope scope = pool.open()) {
+            first = response(scope, "ok");
+            assertEquals("<response version=\"1\"><status>ok</status><item id=\"i0\"/><item id=\"i1\"/><item id=\"i2\"/></response>", first.toString(true));
+        }
+        assertEquals(5, pool.getIdleCount());
+        
+        try(ElementPool.Scope scope = pool.open()) {
+            Element element = scope.element("other");
+            assertNull(element.getAttribute("version"));
+            assertNull(element.getText());
+            assertEquals("<other/>", element.toString(true));
+            Element second = response(scope, "ko");
+            assertEquals("<response version=\"1\"><status>ko</status><item id=\"i0\"/><item id=\"i1\"/><item id=\"i2\"/></response>", second.toString(true));
+        }
+        assertEquals(6, pool.getIdleCount());
+    }
+
+    /**
+     * Test of close method, of class ElementPool.Scope, with a child out of the scope.
+     */
+    @Test
+    public void testCloseDetachesForeignChildren() {
+        System.out.println("close");
+        ElementPool pool = new ElementPool();
+        Element foreign = new Element("kept");
+        try(ElementPool.Scope scope = pool.open()) {
+            scope.element("root").addChild(foreign);
+        }
+        Element root = new Element("root");
+        root.addChild(foreign);
+        assertEquals("<root><kept/></root>", root.toString(true));
+    }
+
+    /**
+     * Test of the limit of idle elements, of class ElementPool.
+     */
+    @Test
+    public void testMaxIdle() {
+        System.out.println("maxIdle");
+        ElementPool pool = new ElementPool(2);
+        try(ElementPool.Scope scope = pool.open()) {
+            response(scope, "ok");
+        }
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    /**
+     * Test of element method, of class ElementPool.Scope, once the scope is closed.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testElementWhenClosed() {
+        System.out.println("element");
+        ElementPool.Scope scope = new ElementPool().open();
+        scope.close();
+        scope.element("a");
+    }
+
+    /**
+     * Test of open method, of class ElementPool, when the scope is already open.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testOpenTwice() {
+        System.out.println("open");
+        ElementPool pool = new ElementPool();
+        pool.open();
+        pool.open();
+    }
+
+    /**
+     * Test of the allocations of a warm pool : building and writing the same response again allocates next to nothing.
+     */
+    @Test
+    public void testSteadyStateAllocation() throws Exception {
+        System.out.println("steady state allocation");
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+        ElementPool pool = new ElementPool();
+        StringBuilder out = new StringBuilder(1024);
+        int count = 100000;
+        for(int i = 0 ; i<count ; i++) {
+            out.setLength(0);
+            try(ElementPool.Scope scope = pool.open()) {
+                response(scope, "ok").writeTo(out, OutputFormat.COMPACT);
+            }
+        }
+        
+        long before = threads.getThreadAllocatedBytes(thread);
+        for(int i = 0 ; i<count ; i++) {
+            out.setLength(0);
+            try(ElementPool.Scope scope = pool.open()) {
+                response(scope, "ok").writeTo(out, OutputFormat.COMPACT);
+            }
+        }
+        long perTree = (threads.getThreadAllocatedBytes(thread) - before) / count;
+        System.out.println(perTree+" bytes per tree");
+        assertTrue(perTree < 64);
+    }
+    
+}
@@ -19,6 +19,18 @@ package com.kodintek.dumbxmlwriter;
 import com.kodintek.dumbxmlwriter.InvalidChildException;
 import com.kodintek.dumbxmlwriter.Element;
 import com.kodintek.dumbxmlwriter.InvalidAttributeException;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import com.sun.management.ThreadMXBean;
+import org.junit.Assume;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -149,6 +161,65 @@ public class ElementTest {
         instance.addAttribute(name, value);
     }
 
+    /**
+     * Test of addAttribute method, of class Element with adding a duplicate attribute differing by whitespaces
+     */
+    @Test(expected = InvalidAttributeException.class)
+    public void testAddAttributeWithDuplicateWithWhitespaces() {
+        System.out.println("addAttribute");
+        Element instance = new Element("test");
+        instance.addAttribute("test", "test");
+        instance.addAttribute(" test ", "test");
+    }
+
+    /**
+     * Test of addAttribute method, of class Element : the attributes are written in insertion order.
+     */
+    @Test
+    public void testAddAttributeOrder() {
+        System.out.println("addAttribute");
+        Element instance = new Element("test");
+        for(int i = 20 ; i>0 ; i--) {
+            instance.addAttribute("a"+i, Integer.toString(i));
+        }
+        StringBuilder expResult = new StringBuilder("<test");
+        for(int i = 20 ; i>0 ; i--) {
+            expResult.append(" a").append(i).append("=\"").append(i).append('"');
+        }
+        expResult.append("/>");
+        assertEquals(expResult.toString(), instance.toString(true));
+    }
+
+    /**
+     * Test of getAttribute method, of class Element.
+     */
+    @Test
+    public void testGetAttribute() {
+        System.out.println("getAttribute");
+        Element instance = new Element("test");
+        assertNull(instance.getAttribute("a"));
+        instance.addAttribute("a", "1");
+        instance.addAttribute("b", null);
+        assertEquals("1", instance.getAttribute("a"));
+        assertEquals("1", instance.getAttribute(" a "));
+        assertEquals("", instance.getAttribute("b"));
+        assertNull(instance.getAttribute("c"));
+        assertNull(instance.getAttribute(null));
+    }
+
+    /**
+     * Test of getName and getText methods, of class Element.
+     */
+    @Test
+    public void testGetNameAndText() {
+        System.out.println("getName");
+        Element instance = new Element("  test ");
+        assertEquals("test", instance.getName());
+        assertNull(instance.getText());
+        instance.addTextChild(" text ");
+        assertEquals("text", instance.getText());
+    }
+
     /**
      * Test of addChild method, of class Element.
      */
@@ -183,6 +254,67 @@ public class ElementTest {
         instance.addChild(child);
     }
 
+    /**
+     * Test of addChild method, of class Element, with a subtree : its descendants are indented according to their new depth.
+     */
+    @Test
+    public void testAddChildWithSubtree() {
+        System.out.println("addChild");
+        Element subtree = new Element("a");
+        Element b = new Element("b", subtree);
+        new Element("c", b).addTextChild("text");
+        Element root = new Element("root");
+        new Element("level", root).addChild(subtree);
+        String expResult = "<root>\n"
+                + "    <level>\n"
+                + "        <a>\n"
+                + "            <b>\n"
+                + "                <c>\n"
+                + "                    text\n"
+                + "                </c>\n"
+                + "            </b>\n"
+                + "        </a>\n"
+                + "    </level>\n"
+                + "</root>\n";
+        assertEquals(expResult, root.toString());
+        assertEquals("        <a>\n", subtree.toString().substring(0, 12));
+    }
+
+    /**
+     * Test of addChild method, of class Element, when moving a child : it is removed from its former parent.
+     */
+    @Test
+    public void testAddChildMove() {
+        System.out.println("addChild");
+        Element first = new Element("first");
+        Element second = new Element("second");
+        Element child = new Element("child", first);
+        second.addChild(child);
+        assertEquals("<first/>", first.toString(true));
+        assertEquals("<second><child/></second>", second.toString(true));
+    }
+
+    /**
+     * Test of addChild method, of class Element, with one of its ancestors.
+     */
+    @Test(expected = InvalidChildException.class)
+    public void testAddChildWithAncestor() {
+        System.out.println("addChild");
+        Element root = new Element("root");
+        Element child = new Element("child", root);
+        child.addChild(root);
+    }
+
+    /**
+     * Test of addChild method, of class Element, with itself.
+     */
+    @Test(expected = InvalidChildException.class)
+    public void testAddChildWithItself() {
+        System.out.println("addChild");
+        Element root = new Element("root");
+        root.addChild(root);
+    }
+
     /**
      * Test of addTextChild method, of class Element.
      */
@@ -218,6 +350,102 @@ public class ElementTest {
         instance.addTextChild("test");
     }
 
+    /**
+     * Test of addTextChild method, of class Element, with a CharSequence : it is written as it is when the element is written.
+     */
+    @Test
+    public void testAddTextChildCharSequence() {
+        System.out.println("addTextChild");
+        StringBuilder text = new StringBuilder("  a < b  ");
+        Element trimmed = new Element("t");
+        trimmed.addTextChild(text, true);
+        Element kept = new Element("k");
+        kept.addTextChild(text, false);
+        assertEquals("<t>a &lt; b</t>", trimmed.toString(true));
+        assertEquals("<k>  a &lt; b  </k>", kept.toString(true));
+        assertEquals("a < b", trimmed.getText());
+        
+        text.setCharAt(2, 'c');
+        assertEquals("<k>  c &lt; b  </k>", kept.toString(true));
+    }
+
+    /**
+     * Test of addTextChild method, of class Element, with a part of a char array.
+     */
+    @Test
+    public void testAddTextChildChars() {
+        System.out.println("addTextChild");
+        char[] chars = "xx  payload&  yy".toCharArray();
+        Element trimmed = new Element("t");
+        trimmed.addTextChild(chars, 2, 12, true);
+        Element kept = new Element("k");
+        kept.addTextChild(chars, 2, 12, false);
+        assertEquals("<t>payload&amp;</t>", trimmed.toString(true));
+        assertEquals("<k>  payload&amp;  </k>", kept.toString(true));
+    }
+
+    /**
+     * Test of addTextChild method, of class Element, with a Reader larger than a chunk, trimmed across chunks.
+     */
+    @Test
+    public void testAddTextChildReader() {
+        System.out.println("addTextChild");
+        StringBuilder text = new StringBuilder("   ");
+        for(int i = 0 ; i<StreamedText.BUFFER_SIZE ; i++) {
+            text.append(i % 100 == 0 ? ' ' : '&');
+        }
+        //Whitespaces spanning the end of the first chunk, then trailing whitespaces over a whole chunk
+        text.setLength(StreamedText.BUFFER_SIZE - 5);
+        text.append("          end");
+        for(int i = 0 ; i<StreamedText.BUFFER_SIZE + 10 ; i++) {
+            text.append(' ');
+        }
+        String expected = text.toString().trim().replace("&", "&amp;");
+        
+        Element trimmed = new Element("t");
+        trimmed.addTextChild(new StringReader(text.toString()), true);
+        assertNull(trimmed.getText());
+        assertEquals("<t>"+expected+"</t>", trimmed.toString(true));
+        
+        Element kept = new Element("k");
+        kept.addTextChild(new StringReader(text.toString()), false);
+        assertEquals("<k>"+text.toString().replace("&", "&amp;")+"</k>", kept.toString(true));
+    }
+
+    /**
+     * Test of addTextChild method, of class Element, with an InputStream.
+     */
+    @Test
+    public void testAddTextChildInputStream() throws Exception {
+        System.out.println("addTextChild");
+        Element instance = new Element("t");
+        instance.addTextChild(new ByteArrayInputStream(" données \n".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, true);
+        assertEquals("<t>données</t>", instance.toString(true));
+    }
+
+    /**
+     * Test of addTextChild method, of class Element, with a Reader written twice.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testAddTextChildReaderWrittenTwice() {
+        System.out.println("addTextChild");
+        Element instance = new Element("t");
+        instance.addTextChild(new StringReader("text"), true);
+        instance.toString();
+        instance.toString();
+    }
+
+    /**
+     * Test of addTextChild method, of class Element, with a Reader when there is already a text value.
+     */
+    @Test(expected = InvalidChildException.class)
+    public void testAddTextChildReaderWhenAlreadyTextChild() {
+        System.out.println("addTextChild");
+        Element instance = new Element("t");
+        instance.addTextChild("text");
+        instance.addTextChild(new StringReader("text"), true);
+    }
+
     /**
      * Test of compactize method, of class Element.
      */
@@ -267,4 +495,439 @@ public class ElementTest {
         assertTrue(e3.toString().contains("\n"));
     }
     
+
+    /**
+     * Test of toString method, of class Element, against the documented indented format.
+     */
+    @Test
+    public void testToStringIndentedFormat() {
+        System.out.println("toString");
+        Element e = new Element("root") ;
+        e.addAttribute("href", "/Converstaions/aaa");
+        Element e2 = new Element("p", e);
+        e2.addTextChild("Coucou le monde !");
+        Element e3 = new Element("vide");
+        e3.addAttribute("lol", "3");
+        e.addChild(e3);
+        e.addTextChild("Yo mec.");
+        String expResult = "<root href=\"/Converstaions/aaa\">\n"
+                + "    Yo mec.\n"
+                + "    <p>\n"
+                + "        Coucou le monde !\n"
+                + "    </p>\n"
+                + "    <vide lol=\"3\"/>\n"
+                + "</root>\n";
+        assertEquals(expResult, e.toString());
+    }
+
+    /**
+     * Test of toString method, of class Element, on an element having children but no text.
+     */
+    @Test
+    public void testToStringWithoutText() {
+        System.out.println("toString");
+        Element e = new Element("a") ;
+        Element e2 = new Element("b", e);
+        new Element("c", e2);
+        String expResult = "<a>\n"
+                + "    <b>\n"
+                + "        <c/>\n"
+                + "    </b>\n"
+                + "</a>\n";
+        assertEquals(expResult, e.toString());
+    }
+
+    /**
+     * Test of writeTo method, of class Element : it must give the same result as toString.
+     */
+    @Test
+    public void testWriteTo() throws Exception {
+        System.out.println("writeTo");
+        Element e = new Element("root") ;
+        e.addAttribute("href", "/Converstaions/aaa");
+        Element e2 = new Element("p", e);
+        e2.addTextChild("Coucou le monde !");
+        new Element("vide", e2);
+        StringWriter writer = new StringWriter();
+        e.writeTo(writer);
+        assertEquals(e.toString(), writer.toString());
+        StringBuilder sb = new StringBuilder("prefix");
+        e.writeTo(sb);
+        assertEquals("prefix" + e.toString(), sb.toString());
+    }
+    
+    /**
+     * Test of toString method, of class Element, in compact mode : no whitespace may be left between nodes.
+     */
+    @Test
+    public void testToStringCompactFormat() {
+        System.out.println("toString compact");
+        Element e = new Element("root") ;
+        e.addAttribute("href", "/Converstaions/aaa");
+        Element e2 = new Element("p", e);
+        e2.addTextChild("Coucou le monde !");
+        Element e3 = new Element("vide");
+        e3.addAttribute("lol", "3");
+        e.addChild(e3);
+        e.addTextChild("Yo mec.");
+        String expResult = "<root href=\"/Converstaions/aaa\">Yo mec.<p>Coucou le monde !</p><vide lol=\"3\"/></root>";
+        assertEquals(expResult, e.toString(true));
+        assertEquals(expResult, e.toString(OutputFormat.COMPACT));
+    }
+    
+    /**
+     * Test of toString method, of class Element, with values needing to be escaped.
+     */
+    @Test
+    public void testToStringEscaping() {
+        System.out.println("toString escaping");
+        Element e = new Element("a") ;
+        e.addAttribute("title", "\"Tom & Jerry\"");
+        e.addTextChild("1 < 2");
+        assertEquals("<a title=\"&quot;Tom &amp; Jerry&quot;\">1 &lt; 2</a>", e.toString(true));
+    }
+
+    /**
+     * Test of toString method, of class Element, with values already escaped.
+     */
+    @Test
+    public void testToStringWithoutEscaping() {
+        System.out.println("toString without escaping");
+        Element e = new Element("a") ;
+        e.addAttribute("title", "Tom &amp; Jerry");
+        e.addTextChild("1 &lt; 2");
+        assertEquals("<a title=\"Tom &amp; Jerry\">1 &lt; 2</a>", e.toString(OutputFormat.COMPACT.withoutEscaping()));
+    }
+    
+    /**
+     * Test of the memory footprint of leaf elements : one million leaves having only a text child must allocate
+     * no more than the Element objects themselves, without any attributes or children list.
+     */
+    @Test
+    public void testLeafFootprint() {
+        System.out.println("leaf footprint");
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        int count = 1000000;
+        long thread = Thread.currentThread().getId();
+        
+        //The size of a reference, from an array of them
+        long before = threads.getThreadAllocatedBytes(thread);
+        Object[] references = new Object[count];
+        long referenceSize = (threads.getThreadAllocatedBytes(thread) - before) / count;
+        //An object header is at most 16 bytes, and the fields are packed after it
+        long elementSize = 16;
+        for(Field field : Element.class.getDeclaredFields()) {
+            if(!Modifier.isStatic(field.getModifiers())) {
+                elementSize += fieldSize(field.getType(), referenceSize);
+            }
+        }
+        
+        //Once beforehand, so that the leaves are measured compiled
+        buildLeaves(references, count / 10);
+        before = threads.getThreadAllocatedBytes(thread);
+        buildLeaves(references, count);
+        long perLeaf = (threads.getThreadAllocatedBytes(thread) - before) / count;
+        
+        System.out.println(perLeaf+" bytes per leaf, "+elementSize+" bytes at most for an Element");
+        assertTrue(perLeaf <= elementSize);
+    }
+
+    /**
+     * Builds leaves having only a text child, kept in the given array so that nothing else is allocated.
+     */
+    private static void buildLeaves(Object[] leaves, int count) {
+        for(int i = 0 ; i<count ; i++) {
+            Element leaf = new Element("leaf");
+            leaf.addTextChild("text");
+            leaves[i] = leaf;
+        }
+    }
+
+    /**
+     * Returns the number of bytes a field of the given type takes in an object.
+     */
+    private static long fieldSize(Class<?> type, long referenceSize) {
+        if(type == long.class || type == double.class) {
+            return 8;
+        } else if(type == int.class || type == float.class) {
+            return 4;
+        } else if(type == short.class || type == char.class) {
+            return 2;
+        } else if(type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return referenceSize;
+    }
+    
+    /**
+     * Test of enableCache method, of class Element : the rendering is kept and reused.
+     */
+    @Test
+    public void testEnableCache() {
+        System.out.println("enableCache");
+        Element root = new Element("root");
+        Element header = new Element("header", root);
+        new Element("title", header).addTextChild("Title");
+        header.enableCache();
+        String expResult = root.toString();
+        assertEquals("    <header>\n", header.getCache().get(OutputFormat.PRETTY, 1).substring(0, 13));
+        assertNull(header.getCache().get(OutputFormat.COMPACT, 1));
+        assertEquals(expResult, root.toString());
+        assertEquals(root.toString(true), root.toString(OutputFormat.COMPACT));
+        assertEquals("<header><title>Title</title></header>", header.getCache().get(OutputFormat.COMPACT, 1));
+    }
+
+    /**
+     * Test of the cache of class Element : any change to a descendant drops the rendering.
+     */
+    @Test
+    public void testCacheInvalidation() {
+        System.out.println("cache invalidation");
+        Element root = new Element("root");
+        root.enableCache();
+        Element header = new Element("header", root);
+        header.enableCache();
+        Element title = new Element("title", header);
+        assertEquals("<root><header><title/></header></root>", root.toString(true));
+        title.addAttribute("lang", "fr");
+        assertEquals("<root><header><title lang=\"fr\"/></header></root>", root.toString(true));
+        title.addTextChild("Title");
+        assertEquals("<root><header><title lang=\"fr\">Title</title></header></root>", root.toString(true));
+        new Element("date", title);
+        assertEquals("<root><header><title lang=\"fr\">Title<date/></title></header></root>", root.toString(true));
+        Element other = new Element("other");
+        other.addChild(title);
+        assertEquals("<root><header/></root>", root.toString(true));
+    }
+
+    /**
+     * Test of enableCache method, of class Element, with a rendering longer than the limit : it is not kept.
+     */
+    @Test
+    public void testEnableCacheLimit() {
+        System.out.println("enableCache");
+        Element root = new Element("root");
+        root.enableCache(10);
+        assertEquals("<root/>", root.toString(true));
+        assertNotNull(root.getCache().get(OutputFormat.COMPACT, 0));
+        new Element("child", root);
+        assertEquals("<root><child/></root>", root.toString(true));
+        assertNull(root.getCache().get(OutputFormat.COMPACT, 0));
+        root.disableCache();
+        assertNull(root.getCache());
+    }
+
+    /**
+     * Test of enableCache method, of class Element, with a rendering longer than the limit : it reaches the output
+     * before the element is fully written, rather than being held whole.
+     */
+    @Test
+    public void testEnableCacheLimitStreamed() throws Exception {
+        System.out.println("enableCache");
+        Element root = new Element("root");
+        for(int i = 0 ; i<100 ; i++) {
+            new Element("child", root).addTextChild("text "+i);
+        }
+        root.enableCache(50);
+        final StringBuilder written = new StringBuilder();
+        final int[] writtenBeforeLast = {-1};
+        Appendable out = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                return append(csq, 0, csq.length());
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                if(csq.subSequence(start, end).toString().equals("text 99")) {
+                    writtenBeforeLast[0] = written.length();
+                }
+                written.append(csq, start, end);
+                return this;
+            }
+
+            @Override
+            public Appendable append(char c) {
+                written.append(c);
+                return this;
+            }
+        };
+        root.writeTo(out, OutputFormat.COMPACT);
+        assertEquals(root.toString(true), written.toString());
+        assertTrue(writtenBeforeLast[0] > 0);
+        assertNull(root.getCache().get(OutputFormat.COMPACT, 0));
+    }
+
+    /**
+     * Test of enableCache method, of class Element, with a child added while the element is written :
+     * the rendering, which may miss the child, is not kept.
+     */
+    @Test
+    public void testEnableCacheModifiedWhileWritten() {
+        System.out.println("enableCache");
+        final ConcurrentElement root = new ConcurrentElement("root");
+        root.enableCache();
+        final boolean[] added = {false};
+        //Read once the children of the root have been listed, as a child appended by another thread would be
+        new Element("first", root).addTextChild(new CharSequence() {
+            private final String text = "text";
+
+            @Override
+            public int length() {
+                if(!added[0]) {
+                    added[0] = true;
+                    new Element("late", root);
+                }
+                return text.length();
+            }
+
+            @Override
+            public char charAt(int index) {
+                return text.charAt(index);
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return text.subSequence(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return text;
+            }
+        }, false);
+        assertEquals("<root><first>text</first></root>", root.toString(true));
+        assertNull(root.getCache().get(OutputFormat.COMPACT, 0));
+        assertEquals("<root><first>text</first><late/></root>", root.toString(true));
+        assertEquals("<root><first>text</first><late/></root>", root.getCache().get(OutputFormat.COMPACT, 0));
+    }
+
+    /**
+     * Test of enableCache method, of class Element, on more renderings than all the caches can keep : the oldest are dropped.
+     */
+    @Test
+    public void testEnableCacheTotalLimit() {
+        System.out.println("enableCache");
+        char[] chars = new char[Element.DEFAULT_CACHE_LIMIT - 100];
+        Arrays.fill(chars, 'a');
+        String text = new String(chars);
+        int count = (int) (RenderCache.MAX_TOTAL_LENGTH / chars.length) + 10;
+        Element[] elements = new Element[count];
+        for(int i = 0 ; i<count ; i++) {
+            elements[i] = new Element("e");
+            elements[i].addTextChild(text);
+            elements[i].enableCache();
+            elements[i].toString(true);
+            assertTrue(RenderCache.totalLength() <= RenderCache.MAX_TOTAL_LENGTH);
+        }
+        assertNull(elements[0].getCache().get(OutputFormat.COMPACT, 0));
+        assertNotNull(elements[count - 1].getCache().get(OutputFormat.COMPACT, 0));
+    }
+
+    /**
+     * Test of the cache shared by threads writing with different formats : each one must get the rendering of its own format.
+     */
+    @Test
+    public void testCacheSharedByThreads() throws Exception {
+        System.out.println("enableCache");
+        final Element root = new Element("root");
+        new Element("child", root).addTextChild("text");
+        final String pretty = root.toString();
+        final String compact = root.toString(true);
+        root.enableCache();
+        final boolean[] failed = {false};
+        Thread[] threads = new Thread[4];
+        for(int t = 0 ; t<threads.length ; t++) {
+            final boolean compacted = t % 2 == 0;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0 ; i<20000 ; i++) {
+                        if(!root.toString(compacted).equals(compacted ? compact : pretty)) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(failed[0]);
+    }
+
+    /**
+     * Builds a random tree, with values holding special, non ASCII and surrogate characters.
+     */
+    private static Element randomTree(Random random, Element parent, int depth) {
+        String[] values = {"", "plain", "a & b", "<tag>", "\"quoted\"", "tab\tand\nnewline\r", "été €", "😀 emoji", "\ud83d unpaired", "  spaced  "};
+        Element element = parent == null ? new Element("root") : new Element("e"+random.nextInt(5), parent);
+        int attributes = random.nextInt(3);
+        for(int i = 0 ; i<attributes ; i++) {
+            element.addAttribute("a"+i, values[random.nextInt(values.length)]);
+        }
+        if(random.nextInt(3) == 0) {
+            element.addTextChild(values[random.nextInt(values.length)], random.nextBoolean());
+        }
+        if(depth < 5) {
+            int children = random.nextInt(4);
+            for(int i = 0 ; i<children ; i++) {
+                randomTree(random, element, depth + 1);
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Test of getLength and getUtf8Length methods, of class Element, on random trees : they must match the output exactly.
+     */
+    @Test
+    public void testGetLength() {
+        System.out.println("getLength");
+        Random random = new Random(7);
+        OutputFormat[] formats = {OutputFormat.PRETTY, OutputFormat.COMPACT, OutputFormat.PRETTY.withoutEscaping(), new OutputFormat("\t·", "\r\n")};
+        for(int i = 0 ; i<200 ; i++) {
+            Element root = randomTree(random, null, 0);
+            for(OutputFormat format : formats) {
+                String expResult = root.toString(format);
+                assertEquals(expResult.length(), root.getLength(format));
+                assertEquals(expResult.getBytes(StandardCharsets.UTF_8).length, root.getUtf8Length(format));
+                //A subtree is measured at its depth
+                if(root.hasChildren()) {
+                    Element child = root.getChildren().get(0);
+                    assertEquals(child.toString(format).length(), child.getLength(format));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of getLength method, of class Element, with cached renderings, concurrent elements and streamed texts.
+     */
+    @Test
+    public void testGetLengthSpecialCases() {
+        System.out.println("getLength");
+        Element root = new Element("root");
+        Element cached = new Element("cached", root);
+        cached.addAttribute("id", "1 & 2");
+        cached.enableCache();
+        assertEquals(root.toString().length(), root.getLength(OutputFormat.PRETTY));
+        assertEquals(root.toString().length(), root.getLength(OutputFormat.PRETTY));
+        
+        ConcurrentElement concurrent = new ConcurrentElement("concurrent");
+        concurrent.addAttribute("b", "<2>");
+        concurrent.addAttribute("a", "1");
+        new Element("child", concurrent).addTextChild("text");
+        assertEquals(concurrent.toString().length(), concurrent.getLength(OutputFormat.PRETTY));
+        assertEquals(concurrent.toString(true).length(), concurrent.getLength(OutputFormat.COMPACT));
+        
+        new Element("streamed", root).addTextChild(new StringReader("not read"), true);
+        assertEquals(-1, root.getLength(OutputFormat.COMPACT));
+        assertEquals(-1, root.getUtf8Length(OutputFormat.COMPACT));
+        assertEquals("<root><cached id=\"1 &amp; 2\"/><streamed>not read</streamed></root>", root.toString(true));
+    }
+
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class EscaperTest {
+    
+    public EscaperTest() {
+    }
+
+    /**
+     * Test of escapeText method, of class Escaper.
+     */
+    @Test
+    public void testEscapeText() throws Exception {
+        System.out.println("escapeText");
+        StringBuilder sb = new StringBuilder();
+        Escaper.escapeText(sb, "a < b && c > \"d\"\n");
+        assertEquals("a &lt; b &amp;&amp; c &gt; \"d\"\n", sb.toString());
+    }
+
+    /**
+     * Test of escapeText method, of class Escaper, with only a part of the value.
+     */
+    @Test
+    public void testEscapeTextRange() throws Exception {
+        System.out.println("escapeText");
+        StringBuilder sb = new StringBuilder();
+        Escaper.escapeText(sb, "<a&b>", 1, 4);
+        assertEquals("a&amp;b", sb.toString());
+    }
+
+    /**
+     * Test of escapeAttribute method, of class Escaper.
+     */
+    @Test
+    public void testEscapeAttribute() throws Exception {
+        System.out.println("escapeAttribute");
+        StringBuilder sb = new StringBuilder();
+        Escaper.escapeAttribute(sb, "&<>\"'\t\n\r");
+        assertEquals("&amp;&lt;&gt;&quot;'&#9;&#10;&#13;", sb.toString());
+    }
+
+    /**
+     * Test of escapeText method, of class Escaper, with a value needing no escaping : it is written as is.
+     */
+    @Test
+    public void testEscapeTextWithoutSpecialCharacters() throws Exception {
+        System.out.println("escapeText");
+        StringBuilder sb = new StringBuilder();
+        Escaper.escapeText(sb, "Coucou le monde ! été");
+        assertEquals("Coucou le monde ! été", sb.toString());
+    }
+    
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class IncrementalWriterTest {
+    
+    public IncrementalWriterTest() {
+    }
+
+    /**
+     * Test of the incremental output : it must be the one of the whole tree, whatever the completed elements.
+     */
+    @Test
+    public void testSameAsToString() throws Exception {
+        System.out.println("complete");
+        Element expected = new Element("root");
+        expected.addAttribute("version", "1");
+        StringBuilder out = new StringBuilder();
+        Element root = new Element("root");
+        root.addAttribute("version", "1");
+        IncrementalWriter writer = new IncrementalWriter(root, out);
+        for(int s = 0 ; s<3 ; s++) {
+            Element expectedSection = new Element("section", expected);
+            Element section = new Element("section", root);
+            section.addAttribute("id", Integer.toString(s));
+            expectedSection.addAttribute("id", Integer.toString(s));
+            for(int i = 0 ; i<4 ; i++) {
+                Element expectedItem = new Element("item", expectedSection);
+                expectedItem.addTextChild("item "+i);
+                Element item = new Element("item", section);
+                item.addTextChild("item "+i);
+                //Only some items are completed, the others are written with their following sibling
+                if(i % 2 == 1) {
+                    writer.complete(item);
+                }
+            }
+            new Element("empty", expectedSection);
+            new Element("empty", section);
+        }
+        writer.close();
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    /**
+     * Test of complete method, of class IncrementalWriter : the completed element is removed from the tree.
+     */
+    @Test
+    public void testCompleteReleases() throws Exception {
+        System.out.println("complete");
+        StringBuilder out = new StringBuilder();
+        Element root = new Element("root");
+        Element first = new Element("first", root);
+        Element second = new Element("second", root);
+        IncrementalWriter writer = new IncrementalWriter(root, out, OutputFormat.COMPACT);
+        writer.complete(second);
+        assertEquals("<root><first/><second/>", out.toString());
+        assertTrue(root.getChildren().isEmpty());
+        assertNull(first.getParent());
+        assertNull(second.getParent());
+        new Element("third", root);
+        writer.close();
+        assertEquals("<root><first/><second/><third/></root>", out.toString());
+    }
+
+    /**
+     * Test of close method, of class IncrementalWriter, when nothing has been completed.
+     */
+    @Test
+    public void testCloseWithoutComplete() throws Exception {
+        System.out.println("close");
+        StringBuilder out = new StringBuilder();
+        Element root = new Element("root");
+        new Element("child", root);
+        new IncrementalWriter(root, out).close();
+        assertEquals(root.toString(), out.toString());
+    }
+
+    /**
+     * Test of complete method, of class IncrementalWriter, with an element written already.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompleteTwice() throws Exception {
+        System.out.println("complete");
+        Element root = new Element("root");
+        Element child = new Element("child", root);
+        IncrementalWriter writer = new IncrementalWriter(root, new StringBuilder());
+        writer.complete(child);
+        writer.complete(child);
+    }
+
+    /**
+     * Test of the memory used while writing a document of 10 million elements : it is written by another JVM
+     * with a 32 MB heap, where the whole tree (about 500 MB) would not fit.
+     */
+    @Test
+    public void testBoundedMemory() throws Exception {
+        System.out.println("complete 10M elements");
+        String java = System.getProperty("java.home")+File.separator+"bin"+File.separator+"java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-Xmx32m", "-cp", System.getProperty("java.class.path"), IncrementalWriterTest.class.getName());
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for(String line = reader.readLine() ; line != null ; line = reader.readLine()) {
+                output.append(line).append('\n');
+            }
+        }
+        assertEquals(output.toString(), 0, process.waitFor());
+        long expected = "<export>".length() + 10000 * ("<section>".length() + 999 * "<record/>".length() + "</section>".length()) + "</export>".length();
+        assertEquals(expected+"\n", output.toString());
+    }
+
+    /**
+     * Writes a document of 10 million elements, and prints its length : run by testBoundedMemory in a small heap.
+     */
+    public static void main(String[] args) throws IOException {
+        final long[] length = new long[1];
+        Appendable counter = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) throws IOException {
+                length[0] += csq.length();
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) throws IOException {
+                length[0] += end - start;
+                return this;
+            }
+
+            @Override
+            public Appendable append(char c) throws IOException {
+                length[0]++;
+                return this;
+            }
+        };
+        Element root = new Element("export");
+        IncrementalWriter writer = new IncrementalWriter(root, counter, OutputFormat.COMPACT);
+        for(int s = 0 ; s<10000 ; s++) {
+            Element section = new Element("section", root);
+            for(int i = 0 ; i<999 ; i++) {
+                Element record = new Element("record", section);
+                writer.complete(record);
+            }
+        }
+        writer.close();
+        System.out.println(length[0]);
+    }
+    
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class IndentationTest {
+    
+    public IndentationTest() {
+    }
+
+    /**
+     * Test of get method, of class Indentation, including depths beyond the initial table.
+     */
+    @Test
+    public void testGet() {
+        System.out.println("get");
+        Indentation instance = new Indentation("\t");
+        StringBuilder expResult = new StringBuilder();
+        for(int depth = 0 ; depth<100 ; depth++) {
+            assertEquals(expResult.toString(), instance.get(depth));
+            expResult.append('\t');
+        }
+        assertEquals("\t\t\t", instance.get(3));
+    }
+
+    /**
+     * Test of get method, of class Indentation, when jumping straight to a large depth.
+     */
+    @Test
+    public void testGetLargeDepth() {
+        System.out.println("get");
+        Indentation instance = new Indentation("ab");
+        assertEquals(200, instance.get(100).length());
+        assertEquals("abab", instance.get(2));
+    }
+
+    /**
+     * Test of write method, of class Indentation, into a builder and into a Writer, up to a large depth.
+     */
+    @Test
+    public void testWrite() throws Exception {
+        System.out.println("write");
+        Indentation instance = new Indentation("  ");
+        for(int depth : new int[]{0, 1, 15, 16, 17, 1000, 3}) {
+            StringBuilder sb = new StringBuilder();
+            instance.write(sb, depth);
+            assertEquals(instance.get(depth), sb.toString());
+            assertEquals(2 * depth, sb.length());
+            StringWriter writer = new StringWriter();
+            instance.write(writer, depth);
+            assertEquals(sb.toString(), writer.toString());
+        }
+        StringBuilder sb = new StringBuilder();
+        new Indentation("").write(sb, 1000);
+        assertEquals(0, sb.length());
+    }
+
+    /**
+     * Test of length method, of class Indentation.
+     */
+    @Test
+    public void testLength() {
+        System.out.println("length");
+        Indentation instance = new Indentation("é\t");
+        assertEquals(20, instance.length(10, false));
+        assertEquals(30, instance.length(10, true));
+        assertEquals(0, instance.length(0, true));
+    }
+    
+}
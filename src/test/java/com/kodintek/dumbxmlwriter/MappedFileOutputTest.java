@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class MappedFileOutputTest {
+    
+    public MappedFileOutputTest() {
+    }
+
+    /**
+     * Builds a tree made of ASCII and non ASCII characters.
+     */
+    private static Element buildTree() {
+        Element root = new Element("root");
+        root.addAttribute("lang", "fr");
+        for(int i = 0 ; i<500 ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("id", Integer.toString(i));
+            item.addTextChild("Coucou le monde ! été € 😀 "+i);
+        }
+        return root;
+    }
+
+    /**
+     * Test of the mapped output : the file must hold exactly the UTF-8 bytes of toString, whatever the window size.
+     */
+    @Test
+    public void testSameAsToString() throws Exception {
+        System.out.println("MappedFileOutput");
+        Element root = buildTree();
+        byte[] expResult = root.toString().getBytes(StandardCharsets.UTF_8);
+        File file = File.createTempFile("dumbxml", ".xml");
+        try {
+            for(int window : new int[]{4, 5, 7, 4096, 1024 * 1024}) {
+                FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+                MappedFileOutput out = new MappedFileOutput(channel, window);
+                root.writeTo(out);
+                out.close();
+                assertArrayEquals(expResult, Files.readAllBytes(file.toPath()));
+                assertEquals(expResult.length, out.getWrittenBytes());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test of writing from the position of the channel : what is before is kept, what is after is cut off.
+     */
+    @Test
+    public void testFromPosition() throws Exception {
+        System.out.println("MappedFileOutput from position");
+        File file = File.createTempFile("dumbxml", ".xml");
+        try {
+            Files.write(file.toPath(), "<?xml version=\"1.0\"?>\nsome old content, longer than the new one".getBytes(StandardCharsets.UTF_8));
+            FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+            channel.position(22);
+            MappedFileOutput out = new MappedFileOutput(channel, 16);
+            new Element("root").writeTo(out, OutputFormat.COMPACT);
+            out.close();
+            assertEquals("<?xml version=\"1.0\"?>\n<root/>", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            assertEquals(7, out.getWrittenBytes());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test of a pending high surrogate at close, and of writing once closed.
+     */
+    @Test
+    public void testClose() throws Exception {
+        System.out.println("MappedFileOutput close");
+        File file = File.createTempFile("dumbxml", ".xml");
+        try {
+            MappedFileOutput out = new MappedFileOutput(new RandomAccessFile(file, "rw").getChannel(), 4);
+            out.append("abc");
+            out.append('\ud83d');
+            out.close();
+            out.close();
+            assertEquals("abc?", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            try {
+                out.append("more");
+                fail("a closed output must refuse writes");
+            } catch(IOException e) {
+                //expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test of the arguments check.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullChannel() throws Exception {
+        System.out.println("MappedFileOutput null channel");
+        new MappedFileOutput(null);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class NameTest {
+    
+    public NameTest() {
+    }
+
+    /**
+     * Test of of method, of class Name : the same name is always the same instance, trimmed or not.
+     */
+    @Test
+    public void testOf() {
+        System.out.println("of");
+        Name name = Name.of("item");
+        assertSame(name, Name.of(new String("item")));
+        assertSame(name, Name.of("  item "));
+        assertEquals("item", name.toString());
+        assertNotSame(name, Name.of("items"));
+    }
+
+    /**
+     * Test of of method, of class Name, with an empty name.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfEmpty() {
+        System.out.println("of");
+        Name.of("   ");
+    }
+
+    /**
+     * Test of the symbol table bound : a name used all along stays shared while unused names are dropped.
+     */
+    @Test
+    public void testBoundedTable() {
+        System.out.println("symbol table");
+        Name hot = Name.of("hot");
+        for(int i = 0 ; i<3 * Name.MAX_SYMBOLS ; i++) {
+            Name.of("unique"+i);
+            if(i % 1000 == 0) {
+                assertSame(hot, Name.of("hot"));
+                assertSame(hot, Name.of(" hot "));
+            }
+        }
+        assertSame(hot, Name.of("hot"));
+        assertTrue(Name.symbols() <= 2 * Name.MAX_SYMBOLS);
+        assertEquals(Name.of("unique0"), Name.of("unique0"));
+    }
+
+    /**
+     * Test of lookup method, of class Name, with invalid names.
+     */
+    @Test
+    public void testLookupInvalid() {
+        System.out.println("lookup");
+        assertNull(Name.lookup(null));
+        assertNull(Name.lookup(""));
+        assertNull(Name.lookup(" \t"));
+    }
+
+    /**
+     * Test of writeTo method, of class Name, to characters and to bytes.
+     */
+    @Test
+    public void testWriteTo() throws Exception {
+        System.out.println("writeTo");
+        Name name = Name.of("données");
+        StringBuilder sb = new StringBuilder();
+        name.writeTo(sb);
+        assertEquals("données", sb.toString());
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelOutput out = new ChannelOutput(Channels.newChannel(bytes));
+        name.writeTo(out);
+        out.close();
+        assertEquals("données", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test of the names shared between elements, attributes and streamed elements.
+     */
+    @Test
+    public void testSharedByElements() throws Exception {
+        System.out.println("shared names");
+        Name item = Name.of("item");
+        Name id = Name.of("id");
+        Element root = new Element("root");
+        Element a = Element.of(item, root);
+        a.addAttribute(id, "1");
+        Element b = new Element(" item ", root);
+        b.addAttribute(" id", "2");
+        assertEquals("item", b.getName());
+        assertEquals("2", b.getAttribute("id"));
+        assertEquals("1", a.getAttribute(" id "));
+        assertEquals("<root><item id=\"1\"/><item id=\"2\"/></root>", root.toString(true));
+        
+        StringBuilder sb = new StringBuilder();
+        XmlStreamWriter writer = new XmlStreamWriter(sb, OutputFormat.COMPACT);
+        writer.startElement(Name.of("root"));
+        writer.element(a);
+        writer.startElement(item);
+        writer.attribute(id, "3");
+        writer.endDocument();
+        assertEquals("<root><item id=\"1\"/><item id=\"3\"/></root>", sb.toString());
+    }
+
+    /**
+     * Test of addAttribute method, of class Element, with a name already used as a raw string.
+     */
+    @Test(expected = InvalidAttributeException.class)
+    public void testDuplicateAttribute() {
+        System.out.println("addAttribute");
+        Element e = new Element("a");
+        e.addAttribute("id", "1");
+        e.addAttribute(Name.of("id"), "2");
+    }
+    
+}
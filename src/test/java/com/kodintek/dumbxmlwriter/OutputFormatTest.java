@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class OutputFormatTest {
+    
+    public OutputFormatTest() {
+    }
+
+    /**
+     * Test of a format with a custom indent unit and line separator.
+     */
+    @Test
+    public void testCustomFormat() {
+        System.out.println("custom format");
+        Element e = new Element("a");
+        Element e2 = new Element("b", e);
+        e2.addTextChild("text");
+        OutputFormat format = new OutputFormat("\t", "\r\n");
+        assertEquals("\t", format.getIndent());
+        assertEquals("\r\n", format.getNewline());
+        assertEquals("<a>\r\n\t<b>\r\n\t\ttext\r\n\t</b>\r\n</a>\r\n", e.toString(format));
+    }
+
+    /**
+     * Test of withoutEscaping method, of class OutputFormat : the layout is kept.
+     */
+    @Test
+    public void testWithoutEscaping() {
+        System.out.println("withoutEscaping");
+        OutputFormat format = new OutputFormat("\t", "\r\n");
+        OutputFormat instance = format.withoutEscaping();
+        assertTrue(format.isEscaping());
+        assertFalse(instance.isEscaping());
+        assertEquals("\t", instance.getIndent());
+        assertEquals("\r\n", instance.getNewline());
+        assertSame(instance, instance.withoutEscaping());
+    }
+
+    /**
+     * Test of the constructor with a null indent.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitializationWithNull() {
+        System.out.println("Constructor");
+        new OutputFormat(null, "\n");
+    }
+    
+}
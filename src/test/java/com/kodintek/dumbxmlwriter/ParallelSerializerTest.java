@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class ParallelSerializerTest {
+    
+    public ParallelSerializerTest() {
+    }
+
+    /**
+     * Builds a random tree.
+     */
+    private static Element randomTree(Random random, int elements) {
+        Element root = new Element("root");
+        Element[] all = new Element[elements];
+        all[0] = root;
+        for(int i = 1 ; i<elements ; i++) {
+            //Favor wide elements by attaching mostly to the first ones
+            Element parent = all[random.nextInt(1 + random.nextInt(i))];
+            all[i] = new Element("e"+random.nextInt(5), parent);
+            if(random.nextBoolean()) {
+                all[i].addAttribute("id", Integer.toString(i));
+            }
+            if(random.nextInt(3) == 0) {
+                all[i].addTextChild("text & "+i);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Test of toString method, of class ParallelSerializer : the result must be the one of Element.toString.
+     */
+    @Test
+    public void testToString() {
+        System.out.println("toString");
+        Random random = new Random(42);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for(int threshold : new int[]{1, 2, 3, 10, 1000}) {
+                ParallelSerializer instance = new ParallelSerializer(pool, threshold);
+                for(int i = 0 ; i<10 ; i++) {
+                    Element root = randomTree(random, 1 + random.nextInt(2000));
+                    assertEquals(root.toString(), instance.toString(root, OutputFormat.PRETTY));
+                    assertEquals(root.toString(true), instance.toString(root, OutputFormat.COMPACT));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test of writeTo method, of class ParallelSerializer, with a subtree : it is indented according to its depth.
+     */
+    @Test
+    public void testWriteToSubtree() throws Exception {
+        System.out.println("writeTo");
+        Element root = new Element("root");
+        Element child = new Element("child", root);
+        for(int i = 0 ; i<100 ; i++) {
+            new Element("leaf", child).addTextChild(Integer.toString(i));
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            StringBuilder sb = new StringBuilder();
+            new ParallelSerializer(pool, 4).writeTo(child, sb, OutputFormat.PRETTY);
+            assertEquals(child.toString(), sb.toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test of the default constructor : the serializers share one pool instead of starting threads each.
+     */
+    @Test
+    public void testDefaultPoolShared() {
+        System.out.println("ParallelSerializer");
+        Element root = new Element("root");
+        for(int i = 0 ; i<4 * ParallelSerializer.DEFAULT_THRESHOLD ; i++) {
+            new Element("leaf", root).addTextChild(Integer.toString(i));
+        }
+        String expected = root.toString();
+        assertEquals(expected, new ParallelSerializer().toString(root, OutputFormat.PRETTY));
+        int threads = Thread.activeCount();
+        for(int i = 0 ; i<20 ; i++) {
+            assertEquals(expected, new ParallelSerializer().toString(root, OutputFormat.PRETTY));
+        }
+        assertTrue(Thread.activeCount() <= threads + Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Test of the constructor with a threshold lower than 1.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitializationWithZeroThreshold() {
+        System.out.println("Constructor");
+        new ParallelSerializer(new ForkJoinPool(1), 0);
+    }
+    
+}
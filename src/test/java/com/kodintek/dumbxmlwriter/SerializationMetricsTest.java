@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import com.sun.management.ThreadMXBean;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.util.concurrent.ForkJoinPool;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class SerializationMetricsTest {
+    
+    public SerializationMetricsTest() {
+    }
+
+    /**
+     * Builds a root with two children, one having attributes and the other one a text value.
+     */
+    private static Element tree() {
+        Element root = new Element("root");
+        Element a = new Element("a", root);
+        a.addAttribute("x", "1 < 2");
+        a.addAttribute("y", "&");
+        new Element("b", root).addTextChild("c > d");
+        return root;
+    }
+
+    /**
+     * Test of the statistics recorded while writing an element.
+     */
+    @Test
+    public void testWrite() {
+        System.out.println("write");
+        SerializationMetrics metrics = new SerializationMetrics();
+        OutputFormat format = OutputFormat.COMPACT.withMetrics(metrics);
+        String xml = tree().toString(format);
+        assertEquals(tree().toString(true), xml);
+        
+        assertEquals(1, metrics.getDocuments());
+        assertEquals(3, metrics.getElements());
+        assertEquals(2, metrics.getAttributes());
+        assertEquals(3, metrics.getEscapes());
+        assertEquals(xml.length(), metrics.getCharactersWritten());
+        assertEquals(0, metrics.getBytesWritten());
+        assertEquals(1, metrics.getMaxDepth());
+        assertTrue(metrics.getBufferGrowths() > 0);
+        assertTrue(metrics.getMaxNanos() > 0);
+        assertTrue(metrics.getTotalNanos() >= metrics.getMaxNanos());
+        
+        tree().toString(format);
+        assertEquals(2, metrics.getDocuments());
+        assertEquals(6, metrics.getElements());
+        assertEquals(metrics.getTotalNanos() / 2, metrics.getAverageNanos());
+        
+        metrics.reset();
+        assertEquals(0, metrics.getDocuments());
+        assertEquals(0, metrics.getElements());
+        assertEquals(0, metrics.getMaxNanos());
+    }
+
+    /**
+     * Test of the bytes counted while writing into a Utf8Output.
+     */
+    @Test
+    public void testBytesWritten() throws Exception {
+        System.out.println("bytesWritten");
+        SerializationMetrics metrics = new SerializationMetrics();
+        Element root = new Element("root");
+        root.addTextChild("données");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelOutput out = new ChannelOutput(Channels.newChannel(bytes));
+        root.writeTo(out, OutputFormat.COMPACT.withMetrics(metrics));
+        out.close();
+        assertEquals(bytes.size(), metrics.getBytesWritten());
+        assertEquals(bytes.size() - 1, metrics.getCharactersWritten());
+    }
+
+    /**
+     * Test of the formats derived from a format with metrics.
+     */
+    @Test
+    public void testWithMetrics() {
+        System.out.println("withMetrics");
+        SerializationMetrics metrics = new SerializationMetrics();
+        OutputFormat format = OutputFormat.PRETTY.withMetrics(metrics);
+        assertNull(OutputFormat.PRETTY.getMetrics());
+        assertSame(metrics, format.getMetrics());
+        assertSame(metrics, format.withoutEscaping().getMetrics());
+        assertEquals("    ", format.getIndent());
+        
+        tree().toString(format.withoutEscaping());
+        assertEquals(0, metrics.getEscapes());
+        assertEquals(3, metrics.getElements());
+    }
+
+    /**
+     * Test of withMetrics method : the same metrics give the same format, so that cached renderings are reused.
+     */
+    @Test
+    public void testWithMetricsSameInstance() {
+        System.out.println("withMetrics");
+        SerializationMetrics metrics = new SerializationMetrics();
+        OutputFormat format = OutputFormat.COMPACT.withMetrics(metrics);
+        assertSame(format, OutputFormat.COMPACT.withMetrics(metrics));
+        assertSame(format, format.withMetrics(metrics));
+        assertNotSame(format, OutputFormat.COMPACT.withMetrics(new SerializationMetrics()));
+        
+        Element root = tree();
+        root.enableCache();
+        String xml = root.toString(OutputFormat.COMPACT.withMetrics(metrics));
+        assertEquals(xml, root.getCache().get(OutputFormat.COMPACT.withMetrics(metrics), 0));
+    }
+
+    /**
+     * Test of the metrics of a cached subtree : it is counted the same when written, when recorded and when written again from the cache.
+     */
+    @Test
+    public void testCachedSubtree() {
+        System.out.println("metrics with cache");
+        Element document = new Element("document");
+        document.addChild(tree());
+        OutputFormat format = OutputFormat.COMPACT.withMetrics(new SerializationMetrics());
+        String expected = document.toString(format);
+        
+        Element cached = tree();
+        cached.enableCache();
+        document = new Element("document");
+        document.addChild(cached);
+        for(int i = 0 ; i<3 ; i++) {
+            SerializationMetrics metrics = new SerializationMetrics();
+            assertEquals(expected, document.toString(OutputFormat.COMPACT.withMetrics(metrics)));
+            assertEquals(4, metrics.getElements());
+            assertEquals(2, metrics.getAttributes());
+            assertEquals(3, metrics.getEscapes());
+            assertEquals(2, metrics.getMaxDepth());
+            assertNotNull(cached.getCache().get(OutputFormat.COMPACT.withMetrics(metrics), 1));
+        }
+    }
+
+    /**
+     * Test of the elements written by an XmlStreamWriter : each one is recorded as a document.
+     */
+    @Test
+    public void testXmlStreamWriterElement() throws Exception {
+        System.out.println("XmlStreamWriter metrics");
+        SerializationMetrics metrics = new SerializationMetrics();
+        StringBuilder sb = new StringBuilder();
+        XmlStreamWriter writer = new XmlStreamWriter(sb, OutputFormat.COMPACT.withMetrics(metrics));
+        writer.startElement("list");
+        writer.element(tree());
+        writer.element(tree());
+        writer.endDocument();
+        assertEquals(2, metrics.getDocuments());
+        assertEquals(6, metrics.getElements());
+        assertEquals("<list>"+tree().toString(true)+tree().toString(true)+"</list>", sb.toString());
+    }
+
+    /**
+     * Test of the writers which do not record metrics : they refuse a format with metrics rather than ignore them.
+     */
+    @Test
+    public void testRejectedByOtherWriters() throws Exception {
+        System.out.println("metrics rejected");
+        OutputFormat format = OutputFormat.COMPACT.withMetrics(new SerializationMetrics());
+        try {
+            new IncrementalWriter(tree(), new StringBuilder(), format);
+            fail("IncrementalWriter must refuse metrics");
+        } catch(IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            Template.compile(tree(), format);
+            fail("Template must refuse metrics");
+        } catch(IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            new CompactDocument("root").toString(format);
+            fail("CompactDocument must refuse metrics");
+        } catch(IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            new ParallelSerializer(new ForkJoinPool(1), 1).toString(tree(), format);
+            fail("ParallelSerializer must refuse metrics");
+        } catch(IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Test of the export of the statistics through JMX.
+     */
+    @Test
+    public void testMBean() throws Exception {
+        System.out.println("MBean");
+        SerializationMetrics metrics = new SerializationMetrics();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.kodintek.dumbxmlwriter:type=SerializationMetrics,name=test");
+        server.registerMBean(metrics, name);
+        try {
+            tree().toString(OutputFormat.COMPACT.withMetrics(metrics));
+            assertEquals(3L, server.getAttribute(name, "Elements"));
+            assertEquals(1L, server.getAttribute(name, "Documents"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Elements"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    /**
+     * Test of the cost of disabled metrics : writing with a format without metrics allocates nothing.
+     */
+    @Test
+    public void testDisabledAllocatesNothing() {
+        System.out.println("disabled metrics");
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+        Element root = new Element("root");
+        for(int i = 0 ; i<1000 ; i++) {
+            Element item = new Element("item", root);
+            item.addAttribute("id", "a&b");
+            item.addTextChild("x < y");
+        }
+        StringBuilder out = new StringBuilder(64 * 1024);
+        int count = 1000;
+        for(int i = 0 ; i<count ; i++) {
+            out.setLength(0);
+            root.writeTo(out, OutputFormat.PRETTY);
+        }
+        
+        long before = threads.getThreadAllocatedBytes(thread);
+        for(int i = 0 ; i<count ; i++) {
+            out.setLength(0);
+            root.writeTo(out, OutputFormat.PRETTY);
+        }
+        long perDocument = (threads.getThreadAllocatedBytes(thread) - before) / count;
+        System.out.println(perDocument+" bytes per document of 1001 elements");
+        assertTrue(perDocument < 64);
+    }
+    
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class TemplateTest {
+    
+    public TemplateTest() {
+    }
+
+    /**
+     * Builds a template tree : a list with an owner, and a repeated section of rows.
+     */
+    private static Element templateTree() {
+        Element list = new Element("list");
+        list.addAttribute("owner", "${owner}");
+        new Element("title", list).addTextChild("${title}");
+        Element rows = new Element("${rows}", list);
+        Element row = new Element("row", rows);
+        row.addAttribute("id", "${id}");
+        row.addTextChild("${value}");
+        new Element("footer", list);
+        return list;
+    }
+
+    /**
+     * Builds the tree the template rendering must match.
+     */
+    private static Element expectedTree(String owner, int rows) {
+        Element list = new Element("list");
+        list.addAttribute("owner", owner);
+        new Element("title", list).addTextChild("List of "+owner);
+        for(int i = 0 ; i<rows ; i++) {
+            Element row = new Element("row", list);
+            row.addAttribute("id", Integer.toString(i));
+            row.addTextChild("value <"+i+">");
+        }
+        new Element("footer", list);
+        return list;
+    }
+
+    /**
+     * Builds the values of the template.
+     */
+    private static Map<String, Object> values(String owner, int rows) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("owner", owner);
+        values.put("title", "List of "+owner);
+        List<Map<String, Object>> items = new ArrayList<>();
+        for(int i = 0 ; i<rows ; i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", i);
+            item.put("value", "value <"+i+">");
+            items.add(item);
+        }
+        values.put("rows", items);
+        return values;
+    }
+
+    /**
+     * Test of render method, of class Template : it must match the equivalent tree.
+     */
+    @Test
+    public void testRender() {
+        System.out.println("render");
+        Template instance = Template.compile(templateTree());
+        assertEquals(expectedTree("Tom & \"Jerry\"", 3).toString(), instance.render(values("Tom & \"Jerry\"", 3)));
+        assertEquals(expectedTree("Alix", 1).toString(), instance.render(values("Alix", 1)));
+    }
+
+    /**
+     * Test of render method, of class Template, in compact mode.
+     */
+    @Test
+    public void testRenderCompact() {
+        System.out.println("render");
+        Template instance = Template.compile(templateTree(), OutputFormat.COMPACT);
+        assertEquals(expectedTree("Alix", 5).toString(true), instance.render(values("Alix", 5)));
+    }
+
+    /**
+     * Test of render method, of class Template, into an output writing bytes.
+     */
+    @Test
+    public void testRenderEncoded() throws Exception {
+        System.out.println("render");
+        Template instance = Template.compile(templateTree());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelOutput out = new ChannelOutput(Channels.newChannel(bytes), 16, false);
+        instance.render(values("Élodie", 4), out);
+        out.close();
+        assertEquals(expectedTree("Élodie", 4).toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test of render method, of class Template, with a nested element in a section, at the right depth.
+     */
+    @Test
+    public void testRenderNestedSection() {
+        System.out.println("render");
+        Element root = new Element("root");
+        Element items = new Element("${items}", new Element("wrapper", root));
+        new Element("name", new Element("item", items)).addTextChild("${name}");
+        Template instance = Template.compile(root);
+        Map<String, Object> values = new HashMap<>();
+        values.put("items", Collections.singletonList(Collections.singletonMap("name", "a")));
+        assertEquals("<root>\n"
+                + "    <wrapper>\n"
+                + "        <item>\n"
+                + "            <name>\n"
+                + "                a\n"
+                + "            </name>\n"
+                + "        </item>\n"
+                + "    </wrapper>\n"
+                + "</root>\n", instance.render(values));
+    }
+
+    /**
+     * Test of render method, of class Template, with a missing value.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRenderWithMissingValue() {
+        System.out.println("render");
+        Template instance = Template.compile(templateTree());
+        instance.render(Collections.singletonMap("owner", "Alix"));
+    }
+
+    /**
+     * Test of render method, of class Template, with values only containing '${' : they are written as is.
+     */
+    @Test
+    public void testRenderLiteralDollar() {
+        System.out.println("render");
+        Element note = new Element("note");
+        note.addAttribute("price", "${x} or ${y}");
+        note.addAttribute("code", "${code}");
+        note.addTextChild("price is ${x}");
+        Template instance = Template.compile(note, OutputFormat.COMPACT);
+        assertEquals("<note price=\"${x} or ${y}\" code=\"a &amp; b\">price is ${x}</note>",
+                instance.render(Collections.singletonMap("code", "a & b")));
+    }
+
+    /**
+     * Test of render method, of class Template, without escaping : values holding '<' and '>' do not move the holes.
+     */
+    @Test
+    public void testRenderWithoutEscaping() {
+        System.out.println("render");
+        Element root = new Element("root");
+        root.addAttribute("a", "x > y");
+        root.addAttribute("b", "${b}");
+        new Element("raw", root).addTextChild("<b>${bold}</b>");
+        new Element("value", root).addTextChild("${value}");
+        Template instance = Template.compile(root, OutputFormat.COMPACT.withoutEscaping());
+        Map<String, Object> values = new HashMap<>();
+        values.put("b", "1 < 2");
+        values.put("value", "<i/>");
+        assertEquals("<root a=\"x > y\" b=\"1 < 2\"><raw><b>${bold}</b></raw><value><i/></value></root>", instance.render(values));
+    }
+
+    /**
+     * Test of compile method, of class Template, with a section as root.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileWithSectionRoot() {
+        System.out.println("compile");
+        Template.compile(new Element("${rows}"));
+    }
+    
+}
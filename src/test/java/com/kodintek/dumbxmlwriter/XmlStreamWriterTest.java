@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2015 Alix Ducros
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.kodintek.dumbxmlwriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Alix
+ */
+public class XmlStreamWriterTest {
+    
+    public XmlStreamWriterTest() {
+    }
+
+    /**
+     * Test of the streamed output : it must be the same as the one of the equivalent Element tree.
+     */
+    @Test
+    public void testSameAsElement() throws Exception {
+        System.out.println("stream");
+        Element e = new Element("root") ;
+        e.addAttribute("href", "/Converstaions/aaa");
+        e.addTextChild("Yo mec.");
+        Element e2 = new Element("p", e);
+        e2.addTextChild("Coucou le monde !");
+        Element e3 = new Element("vide", e);
+        e3.addAttribute("lol", "3");
+        
+        StringWriter out = new StringWriter();
+        XmlStreamWriter writer = new XmlStreamWriter(out);
+        writer.startElement("root");
+        writer.attribute("href", "/Converstaions/aaa");
+        writer.text("Yo mec.");
+        writer.startElement("p");
+        writer.text("Coucou le monde !");
+        writer.endElement();
+        writer.startElement("vide");
+        writer.attribute("lol", "3");
+        writer.endElement();
+        writer.endElement();
+        writer.close();
+        assertEquals(e.toString(), out.toString());
+    }
+
+    /**
+     * Test of the streamed output in compact mode.
+     */
+    @Test
+    public void testCompact() throws Exception {
+        System.out.println("stream compact");
+        StringBuilder out = new StringBuilder();
+        XmlStreamWriter writer = new XmlStreamWriter(out, OutputFormat.COMPACT);
+        writer.startElement("a");
+        writer.startElement("b");
+        writer.text("  text ");
+        writer.endElement();
+        writer.startElement("c");
+        writer.endElement();
+        writer.endDocument();
+        assertEquals("<a><b>text</b><c/></a>", out.toString());
+    }
+
+    /**
+     * Test of element method : an existing tree is embedded at the current depth.
+     */
+    @Test
+    public void testElement() throws Exception {
+        System.out.println("element");
+        Element root = new Element("root");
+        Element child = new Element("child", root);
+        new Element("leaf", child);
+        Element embedded = new Element("child");
+        new Element("leaf", embedded);
+        
+        StringBuilder out = new StringBuilder();
+        XmlStreamWriter writer = new XmlStreamWriter(out);
+        writer.startElement("root");
+        writer.element(embedded);
+        writer.endElement();
+        assertEquals(root.toString(), out.toString());
+    }
+
+    /**
+     * Test of the OutputStream constructor : the XML is UTF-8 encoded.
+     */
+    @Test
+    public void testOutputStream() throws Exception {
+        System.out.println("stream utf-8");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlStreamWriter writer = new XmlStreamWriter(out, OutputFormat.COMPACT);
+        writer.startElement("p");
+        writer.text("héhé");
+        writer.close();
+        assertEquals("<p>héhé</p>", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test of attribute method with a duplicate attribute.
+     */
+    @Test(expected = InvalidAttributeException.class)
+    public void testAttributeWithDuplicate() throws Exception {
+        System.out.println("attribute");
+        XmlStreamWriter writer = new XmlStreamWriter(new StringBuilder());
+        writer.startElement("a");
+        writer.attribute("test", "1");
+        writer.attribute("test", "2");
+    }
+
+    /**
+     * Test of attribute method once the start tag is closed.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testAttributeAfterText() throws Exception {
+        System.out.println("attribute");
+        XmlStreamWriter writer = new XmlStreamWriter(new StringBuilder());
+        writer.startElement("a");
+        writer.text("test");
+        writer.attribute("test", "1");
+    }
+
+    /**
+     * Test of text method when there is already a text value.
+     */
+    @Test(expected = InvalidChildException.class)
+    public void testTextWhenAlreadyText() throws Exception {
+        System.out.println("text");
+        XmlStreamWriter writer = new XmlStreamWriter(new StringBuilder());
+        writer.startElement("a");
+        writer.text("test");
+        writer.text("test");
+    }
+
+    /**
+     * Test of endElement method when there is no open element.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testEndElementWhenNoElement() throws Exception {
+        System.out.println("endElement");
+        XmlStreamWriter writer = new XmlStreamWriter(new StringBuilder());
+        writer.startElement("a");
+        writer.endElement();
+        writer.endElement();
+    }
+    
+    /**
+     * Test of the escaping of attribute and text values.
+     */
+    @Test
+    public void testEscaping() throws Exception {
+        System.out.println("stream escaping");
+        StringBuilder out = new StringBuilder();
+        XmlStreamWriter writer = new XmlStreamWriter(out, OutputFormat.COMPACT);
+        writer.startElement("a");
+        writer.attribute("title", "<&>");
+        writer.text("\"1 < 2\"");
+        writer.endDocument();
+        assertEquals("<a title=\"&lt;&amp;&gt;\">\"1 &lt; 2\"</a>", out.toString());
+    }
+    
+}